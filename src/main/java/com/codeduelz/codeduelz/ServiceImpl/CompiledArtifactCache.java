@@ -0,0 +1,144 @@
+package com.codeduelz.codeduelz.ServiceImpl;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed store of compiled programs for the local execution backend.
+ * Entries are keyed by SHA-256 of the language and the wrapped source, so an
+ * unchanged resubmit (or a Submit right after a Run) skips compilation.
+ *
+ * Artifacts are copied into and out of the worker workspace, never linked:
+ * a program can write to its own files, and a shared inode would let one
+ * submission tamper with the program every later identical submission runs.
+ * Cached files are also made read-only. Since workspaces hold copies, evicting
+ * an entry never pulls files out from under a running program. Eviction is
+ * LRU, bounded by the total size of the stored artifacts.
+ */
+public class CompiledArtifactCache {
+
+    private final Path dir;
+    private final long maxBytes;
+
+    // key -> size in bytes, in access order (eldest first)
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public CompiledArtifactCache(Path dir, long maxBytes) throws IOException {
+        this.dir = Files.createDirectories(dir);
+        this.maxBytes = maxBytes;
+    }
+
+    public static String key(String language, String sourceCode) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(language.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(sourceCode.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Copy the cached artifacts for key into the workspace.
+     * Returns false (a miss) when nothing is cached for this key.
+     */
+    public boolean restore(String key, Path workspace) throws IOException {
+        synchronized (this) {
+            if (entries.get(key) == null) {
+                misses.incrementAndGet();
+                return false;
+            }
+            // Copy while holding the lock so the entry can't be evicted half way through
+            try (Stream<Path> files = Files.list(dir.resolve(key))) {
+                for (Path file : files.toList()) {
+                    Files.copy(file, workspace.resolve(file.getFileName().toString()),
+                            StandardCopyOption.COPY_ATTRIBUTES);
+                }
+            }
+        }
+        hits.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Store freshly compiled artifacts from the workspace under key.
+     */
+    public void store(String key, Path workspace, List<Path> artifacts) throws IOException {
+        long size = 0;
+        for (Path artifact : artifacts) {
+            size += Files.size(artifact);
+        }
+        if (artifacts.isEmpty() || size > maxBytes) {
+            return;
+        }
+
+        // Stage outside the lock, then publish with a single rename
+        Path staging = Files.createTempDirectory(dir, "staging-");
+        for (Path artifact : artifacts) {
+            Path copy = staging.resolve(workspace.relativize(artifact).toString());
+            Files.copy(artifact, copy, StandardCopyOption.COPY_ATTRIBUTES);
+            copy.toFile().setWritable(false, false);
+        }
+
+        synchronized (this) {
+            if (entries.containsKey(key)) {
+                deleteRecursively(staging);
+                return;
+            }
+            Files.move(staging, dir.resolve(key));
+            entries.put(key, size);
+            totalBytes += size;
+
+            Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+            while (totalBytes > maxBytes && eldest.hasNext()) {
+                Map.Entry<String, Long> evicted = eldest.next();
+                eldest.remove();
+                totalBytes -= evicted.getValue();
+                deleteRecursively(dir.resolve(evicted.getKey()));
+            }
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    private void deleteRecursively(Path path) {
+        try (Stream<Path> walk = Files.walk(path)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.deleteIfExists(p);
+                } catch (IOException ignored) {
+                }
+            });
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.codeduelz.codeduelz.ServiceImpl;
+
+import com.codeduelz.codeduelz.services.ExecutionBackend;
+import com.codeduelz.codeduelz.services.ExecutionTracer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Executes code remotely through the JDoodle API. This is the default backend.
+ */
+@Service
+@ConditionalOnProperty(name = "judge.backend", havingValue = "jdoodle", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class JdoodleExecutionBackend implements ExecutionBackend {
+
+    private final ExecutionTracer executionTracer;
+
+    @Value("${jdoodle.api.url}")
+    private String jdoodleApiUrl;
+
+    @Value("${jdoodle.client.id}")
+    private String clientId;
+
+    @Value("${jdoodle.client.secret}")
+    private String clientSecret;
+
+    private static final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    // A compiler diagnostic: "Main.java:12: error: ..." (javac) or
+    // "main.cpp:12:5: error: ..." (gcc/clang). An exception message that merely
+    // contains "error:" doesn't have this form.
+    private static final Pattern COMPILER_ERROR_LINE =
+            Pattern.compile("(?m)^\\S+?:\\d+:(?:\\d+:)?\\s*(?:fatal )?error:");
+    // Python reports these before running any of the program
+    private static final Pattern PYTHON_SYNTAX_ERROR =
+            Pattern.compile("(?m)^(?:SyntaxError|IndentationError|TabError):");
+
+    // Map frontend language keys to JDoodle language names and version indices
+    private static final Map<String, String[]> LANGUAGE_MAP = Map.of(
+            "cpp", new String[] { "cpp17", "0" },
+            "python", new String[] { "python3", "4" },
+            "java", new String[] { "java", "4" },
+            "javascript", new String[] { "nodejs", "4" });
+
+    @Override
+    public Map<String, Object> execute(String sourceCode, String language, String stdin) {
+        try {
+            String[] langInfo = LANGUAGE_MAP.getOrDefault(language, LANGUAGE_MAP.get("cpp"));
+
+            Map<String, Object> requestBody = new HashMap<>();
+            requestBody.put("clientId", clientId);
+            requestBody.put("clientSecret", clientSecret);
+            requestBody.put("script", sourceCode);
+            requestBody.put("language", langInfo[0]);
+            requestBody.put("versionIndex", langInfo[1]);
+            if (stdin != null && !stdin.isEmpty()) {
+                requestBody.put("stdin", stdin);
+            }
+
+            String json = objectMapper.writeValueAsString(requestBody);
+            // Redacted by the tracer: the body carries the client credentials
+            executionTracer.payload("jdoodle request", json);
+
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create(jdoodleApiUrl))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(json))
+                    .timeout(Duration.ofSeconds(30))
+                    .build();
+
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            executionTracer.payload("jdoodle response " + response.statusCode(), response.body());
+
+            if (response.statusCode() != 200) {
+                log.warn("JDoodle API returned HTTP {}", response.statusCode());
+                return Map.of("error", "JDoodle API error: HTTP " + response.statusCode(),
+                        "stdout", "", "stderr", "", "exitCode", -1);
+            }
+
+            JsonNode root = objectMapper.readTree(response.body());
+
+            // JDoodle response format:
+            // { "output": "...", "statusCode": 200, "memory": "...", "cpuTime": "..." }
+            // For compilation errors, output contains the error message
+            String output = root.has("output") ? root.get("output").asText() : "";
+            int statusCode = root.has("statusCode") ? root.get("statusCode").asInt() : -1;
+
+            // Check for compilation or runtime errors
+            // JDoodle returns statusCode 200 for successful execution
+            // Non-zero statusCode or error messages in output indicate failures
+            boolean hasError = statusCode != 200;
+            boolean isCompilationError = false;
+            String stderr = "";
+            String stdout = output;
+
+            if (isCompilationError(output, language)) {
+                isCompilationError = true;
+                stderr = output;
+                stdout = "";
+            } else if (hasError) {
+                // Runtime error
+                stderr = output;
+                stdout = "";
+            }
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("stdout", stdout);
+            result.put("stderr", stderr);
+            result.put("exitCode", hasError ? 1 : 0);
+            result.put("timedOut", false); // JDoodle handles timeouts internally
+            result.put("compilationError", isCompilationError);
+            log.debug("JDoodle execution finished: exitCode={} compilationError={} stdoutChars={} stderrChars={}",
+                    hasError ? 1 : 0, isCompilationError, stdout.length(), stderr.length());
+            return result;
+
+        } catch (Exception e) {
+            return Map.of("error", "Execution failed: " + e.getMessage(),
+                    "stdout", "", "stderr", e.getMessage(), "exitCode", -1);
+        }
+    }
+
+    /**
+     * Whether JDoodle's combined output is a compiler's rejection of the
+     * program rather than output or an error from running it. Only the
+     * compiler's own diagnostic forms count.
+     */
+    static boolean isCompilationError(String output, String language) {
+        if ("python".equals(language)) {
+            return PYTHON_SYNTAX_ERROR.matcher(output).find();
+        }
+        return COMPILER_ERROR_LINE.matcher(output).find() || output.contains("compilation terminated");
+    }
+}
@@ -0,0 +1,163 @@
+package com.codeduelz.codeduelz.ServiceImpl;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Entry point of the JVMs LocalExecutionBackend starts ahead of time, so a
+ * Java submission doesn't wait for a JVM to boot. Runs inside the sandbox
+ * with nothing but the JDK on its classpath, so it must not depend on the
+ * rest of the application, nor compile to more than this one class file.
+ *
+ * Started as "compile" or "run", it gets ready and then blocks until the
+ * backend writes a class name line to its stdin. A compiler, warmed up on a
+ * throwaway class meanwhile, compiles that class's source in the working
+ * directory; a runner, with the common library classes loaded, runs its main
+ * method with the rest of stdin as the program's input. Each JVM serves a
+ * single execution and then exits, so no submission ever shares a process
+ * with another.
+ */
+public final class JvmStandby {
+
+    private static final String WARMUP_SOURCE = """
+            import java.util.*;
+            public class Warmup {
+                public static void main(String[] args) {
+                    List<Integer> values = new ArrayList<>(Arrays.asList(3, 1, 2));
+                    Collections.sort(values);
+                    System.out.println(values);
+                }
+            }
+            """;
+    // Later compiles keep getting faster as more of javac is JIT-compiled
+    private static final int COMPILER_WARMUPS = 5;
+
+    private JvmStandby() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        boolean compile = args.length > 0 && args[0].equals("compile");
+        InputStream control = new FileInputStream(FileDescriptor.in);
+        JavaCompiler compiler = null;
+        if (compile) {
+            compiler = ToolProvider.getSystemJavaCompiler();
+            warmUpCompiler(compiler, control);
+        } else {
+            warmUpRuntime();
+        }
+
+        String className = readLine(control);
+        if (className == null || className.isEmpty()) {
+            System.exit(2);
+        }
+        if (compile) {
+            // The classpath is just the working directory, as for javac, not this JVM's own
+            System.exit(compiler.run(null, System.out, System.err, "-encoding", "UTF-8", "-cp", ".",
+                    className + ".java"));
+        }
+        runMain(className);
+    }
+
+    // Compile a small class a few times, discarding it, so the compiler's
+    // classes are loaded and its hot paths compiled before the real source
+    // arrives; stops early once it has
+    private static void warmUpCompiler(JavaCompiler compiler, InputStream control) throws IOException {
+        Path dir = Files.createTempDirectory("warmup");
+        try {
+            Path source = Files.writeString(dir.resolve("Warmup.java"), WARMUP_SOURCE);
+            for (int i = 0; i < COMPILER_WARMUPS && control.available() == 0; i++) {
+                compiler.run(null, OutputStream.nullOutputStream(), OutputStream.nullOutputStream(),
+                        "-d", dir.toString(), source.toString());
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    // Load and bootstrap what judged programs commonly use (collections,
+    // lambdas and streams, string concatenation and formatting, Scanner), so
+    // the program doesn't pay for it; the results are discarded
+    private static void warmUpRuntime() {
+        Map<String, List<Integer>> groups = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            groups.computeIfAbsent("group" + (i % 7), key -> new ArrayList<>()).add(i);
+        }
+        Deque<Integer> queue = new ArrayDeque<>(groups.get("group1"));
+        PriorityQueue<Integer> heap = new PriorityQueue<>(Comparator.reverseOrder());
+        heap.addAll(queue);
+        Set<Integer> seen = new HashSet<>(new TreeSet<>(heap));
+        String summary = groups.values().stream().map(List::size).sorted().map(String::valueOf)
+                .collect(Collectors.joining(",")) + seen.size();
+        int[][] grid = { { 1, 2 }, { 3, 4 } };
+        String printed = Arrays.toString(grid[0]) + Arrays.deepToString(grid) + new StringBuilder(summary).reverse();
+        new Scanner("1 2.5 word").nextInt();
+        String.format("%d %s %.2f", printed.length(), printed, 1.5);
+    }
+
+    // Read byte by byte from the raw descriptor, so none of the program's
+    // input is consumed into a buffer along with the class name
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') {
+            line.append((char) b);
+        }
+        return b == -1 && line.isEmpty() ? null : line.toString();
+    }
+
+    // As the java launcher does: report a missing main or an uncaught
+    // exception on stderr and exit with 1; otherwise the JVM exits once the
+    // program's non-daemon threads are done
+    private static void runMain(String className) throws IllegalAccessException {
+        Method main;
+        try {
+            Class<?> mainClass = Class.forName(className, false, ClassLoader.getSystemClassLoader());
+            main = mainClass.getDeclaredMethod("main", String[].class);
+        } catch (ClassNotFoundException | NoSuchMethodException | LinkageError e) {
+            System.err.println("Error: could not load main method of class " + className + ": " + e);
+            System.exit(1);
+            return;
+        }
+        if (!Modifier.isStatic(main.getModifiers())) {
+            System.err.println("Error: main method is not static in class " + className);
+            System.exit(1);
+        }
+        main.setAccessible(true);
+        try {
+            main.invoke(null, (Object) new String[0]);
+        } catch (InvocationTargetException e) {
+            System.err.print("Exception in thread \"main\" ");
+            e.getCause().printStackTrace();
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,547 @@
+package com.codeduelz.codeduelz.ServiceImpl;
+
+import com.codeduelz.codeduelz.services.ExecutionBackend;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Compiles and runs code on this machine instead of calling JDoodle.
+ * Enable with judge.backend=local.
+ *
+ * A fixed pool of worker workspaces is created at startup; each execution
+ * borrows one, so at most judge.local.workers programs run at a time. Every
+ * child process runs under ulimit CPU, memory and process caps and is killed
+ * when it exceeds the wall-clock limit. Compiled Java and C++ programs are
+ * reused through a {@link CompiledArtifactCache}.
+ *
+ * With judge.local.warm-jvms, every worker also keeps a compiler and a runner
+ * JVM ({@link JvmStandby}) started ahead of time, under the same sandbox and
+ * limits as a cold javac or java would get. A Java submission hands its class
+ * to them instead of waiting for two JVMs to boot; each serves one execution
+ * and is replaced in the background. The boot and warm-up CPU time counts
+ * towards each one's cap.
+ *
+ * Compilers and programs run inside bubblewrap (judge.local.sandbox=bwrap):
+ * new user, pid, network and IPC namespaces as an unprivileged uid, a
+ * read-only root with the home, temp and application directories hidden, and
+ * only the workspace writable. The environment is cleared down to PATH and
+ * HOME. When the sandbox's first process exits its pid namespace goes with it,
+ * so no background child survives a run. judge.local.sandbox=none runs
+ * programs directly as the application user and is refused unless
+ * judge.local.allow-unsandboxed is set; use it for tests only.
+ */
+@Service
+@ConditionalOnProperty(name = "judge.backend", havingValue = "local")
+@Slf4j
+public class LocalExecutionBackend implements ExecutionBackend {
+
+    @Value("${judge.local.workers:4}")
+    private int workers;
+
+    @Value("${judge.local.cpu-seconds:5}")
+    private int cpuSeconds;
+
+    @Value("${judge.local.memory-mb:256}")
+    private int memoryMb;
+
+    @Value("${judge.local.wall-clock-seconds:10}")
+    private int wallClockSeconds;
+
+    @Value("${judge.local.compile-timeout-seconds:15}")
+    private int compileTimeoutSeconds;
+
+    // Output beyond this is truncated so a runaway print loop can't exhaust the heap
+    @Value("${judge.local.max-output-bytes:65536}")
+    private int maxOutputBytes;
+
+    @Value("${judge.local.sandbox:bwrap}")
+    private String sandbox;
+
+    @Value("${judge.local.allow-unsandboxed:false}")
+    private boolean allowUnsandboxed;
+
+    // Processes and threads per run; a JVM alone starts a couple of dozen threads
+    @Value("${judge.local.max-processes:128}")
+    private int maxProcesses;
+
+    // The only environment programs get besides HOME
+    @Value("${judge.local.path:/usr/local/bin:/usr/bin:/bin}")
+    private String path;
+
+    // Uid and gid programs run as inside the sandbox
+    private static final String SANDBOX_ID = "65534";
+    // Under /tmp, a tmpfs in the sandbox, so the mount points aren't made on the read-only root
+    private static final String SANDBOX_WORKDIR = "/tmp/work";
+    private static final String SANDBOX_LAUNCHER = "/tmp/launcher";
+    private static final String SANDBOX_SCRATCH = "/tmp/scratch";
+
+    private static final String COMPILER = "compile";
+    private static final String RUNNER = "run";
+
+    private static final Pattern JAVA_PUBLIC_CLASS = Pattern.compile("public\\s+(?:final\\s+)?class\\s+(\\w+)");
+
+    // Upper bound on the size of cached compiled programs
+    @Value("${judge.local.artifact-cache-mb:256}")
+    private long artifactCacheMb;
+
+    @Value("${judge.local.warm-jvms:true}")
+    private boolean warmJvms;
+
+    private Path root;
+    private BlockingQueue<Path> workspaces;
+    // Holds JvmStandby's class file, the standby JVMs' only classpath besides the workspace
+    private Path launcherDirectory;
+    // standby directory -> JVM started there, waiting for its execution
+    private final Map<Path, Process> standbys = new ConcurrentHashMap<>();
+    private CompiledArtifactCache artifactCache;
+    private boolean isolated;
+    // Host directories replaced by empty ones inside the sandbox
+    private List<String> hiddenDirectories;
+
+    @PostConstruct
+    public void init() throws IOException, InterruptedException {
+        isolated = switch (sandbox.toLowerCase()) {
+            case "bwrap" -> true;
+            case "none" -> false;
+            default -> throw new IllegalStateException("Unknown judge.local.sandbox: " + sandbox);
+        };
+        if (!isolated && !allowUnsandboxed) {
+            throw new IllegalStateException("judge.local.sandbox=none runs untrusted code as the application user; "
+                    + "set judge.local.allow-unsandboxed=true if that is really intended");
+        }
+
+        root = Files.createTempDirectory("codeduelz-judge");
+        hiddenDirectories = hiddenDirectories(root);
+        workspaces = new ArrayBlockingQueue<>(Math.max(1, workers));
+        for (int i = 0; i < Math.max(1, workers); i++) {
+            Path workspace = Files.createDirectory(root.resolve("worker-" + i));
+            Files.createDirectory(ioDirectory(workspace));
+            workspaces.add(workspace);
+        }
+        artifactCache = new CompiledArtifactCache(root.resolve("artifacts"), artifactCacheMb * 1024 * 1024);
+
+        if (isolated) {
+            // Fail at startup rather than on every submission if user namespaces are unavailable
+            Path workspace = workspaces.peek();
+            String problem;
+            try {
+                ProcessResult probe = run(workspace, List.of("true"), null, compileTimeoutSeconds, "");
+                problem = probe.exitCode() == 0 ? null : probe.stderr();
+            } catch (IOException e) {
+                problem = e.getMessage();
+            }
+            clean(workspace);
+            if (problem != null) {
+                deleteRecursively(root);
+                throw new IllegalStateException("Could not start the bubblewrap sandbox: " + problem);
+            }
+        } else {
+            log.warn("Local execution backend is NOT sandboxed: submitted code runs as the application user");
+        }
+
+        if (warmJvms) {
+            launcherDirectory = root.resolve("launcher");
+            Path classFile = launcherDirectory.resolve(JvmStandby.class.getName().replace('.', '/') + ".class");
+            Files.createDirectories(classFile.getParent());
+            try (InputStream in = JvmStandby.class.getResourceAsStream(JvmStandby.class.getSimpleName() + ".class")) {
+                if (in == null) {
+                    throw new IllegalStateException("JvmStandby.class is not on the classpath");
+                }
+                Files.copy(in, classFile);
+            }
+            for (Path workspace : workspaces) {
+                replenishStandbys(workspace);
+            }
+        }
+        log.info("Local execution backend ready: {} workers under {}{}", workspaces.size(), root,
+                warmJvms ? ", with warm JVMs" : "");
+    }
+
+    @Override
+    public int maxConcurrency() {
+        return workspaces.size();
+    }
+
+    private static List<String> hiddenDirectories(Path root) {
+        List<String> candidates = new ArrayList<>(List.of("/tmp", "/var/tmp", "/home", "/root",
+                System.getProperty("user.home"), System.getProperty("user.dir"),
+                System.getProperty("java.io.tmpdir"), root.toAbsolutePath().toString()));
+        candidates.sort(Comparator.comparingInt(String::length));
+        List<String> hidden = new ArrayList<>();
+        for (String candidate : candidates) {
+            Path dir = Path.of(candidate).toAbsolutePath().normalize();
+            // A directory under one already hidden is covered by it
+            boolean covered = hidden.stream().anyMatch(parent -> dir.startsWith(parent));
+            if (dir.getNameCount() > 0 && !covered && Files.isDirectory(dir)) {
+                hidden.add(dir.toString());
+            }
+        }
+        return hidden;
+    }
+
+    // stdin and the captured output live outside the workspace, so a program
+    // can't swap them for links to files it isn't allowed to read
+    private static Path ioDirectory(Path workspace) {
+        return workspace.resolveSibling(workspace.getFileName() + "-io");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        standbys.values().forEach(Process::destroyForcibly);
+        log.info("Compiled artifact cache: {} hits, {} misses, {} bytes",
+                artifactCache.getHits(), artifactCache.getMisses(), artifactCache.getTotalBytes());
+        deleteRecursively(root);
+    }
+
+    @Override
+    public Map<String, Object> execute(String sourceCode, String language, String stdin) {
+        Path workspace;
+        try {
+            workspace = workspaces.poll(wallClockSeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failure("Execution interrupted");
+        }
+        if (workspace == null) {
+            return failure("No execution worker available");
+        }
+
+        try {
+            return switch (language == null ? "" : language.toLowerCase()) {
+                case "java" -> runJava(workspace, sourceCode, stdin);
+                case "python" -> runInterpreted(workspace, "main.py", sourceCode, stdin,
+                        List.of("python3", "main.py"), true);
+                case "javascript" -> runInterpreted(workspace, "main.js", sourceCode, stdin,
+                        List.of("node", "--max-old-space-size=" + memoryMb, "main.js"), false);
+                default -> runCpp(workspace, sourceCode, stdin);
+            };
+        } catch (Exception e) {
+            return failure("Execution failed: " + e.getMessage());
+        } finally {
+            clean(workspace);
+            replenishStandbys(workspace);
+            workspaces.offer(workspace);
+        }
+    }
+
+    private Map<String, Object> runJava(Path workspace, String sourceCode, String stdin)
+            throws IOException, InterruptedException {
+        Matcher m = JAVA_PUBLIC_CLASS.matcher(sourceCode);
+        String className = m.find() ? m.group(1) : "Main";
+
+        String key = CompiledArtifactCache.key("java", sourceCode);
+        if (!artifactCache.restore(key, workspace)) {
+            Files.writeString(workspace.resolve(className + ".java"), sourceCode);
+
+            ProcessResult compile = warmJvms
+                    ? runStandby(workspace, COMPILER, className, null, compileTimeoutSeconds)
+                    : run(workspace, List.of("javac", "-encoding", "UTF-8", className + ".java"), null,
+                            compileTimeoutSeconds, compileLimits());
+            if (compile.exitCode() != 0 || compile.timedOut()) {
+                return compilationError(compile.stderr().isEmpty() ? compile.stdout() : compile.stderr());
+            }
+            try (Stream<Path> files = Files.list(workspace)) {
+                artifactCache.store(key, workspace,
+                        files.filter(f -> f.getFileName().toString().endsWith(".class")).toList());
+            }
+        }
+
+        ProcessResult exec = warmJvms
+                ? runStandby(workspace, RUNNER, className, stdin, wallClockSeconds)
+                : run(workspace, javaCommand(".", List.of(className)), stdin, wallClockSeconds,
+                        executionLimits(false));
+        return toResult(exec);
+    }
+
+    // The JVM reserves far more address space than it uses, so cap the heap
+    // with -Xmx instead of ulimit -v
+    private List<String> javaCommand(String classPath, List<String> arguments) {
+        List<String> command = new ArrayList<>(List.of("java", "-Xmx" + memoryMb + "m", "-Xss64m",
+                "-XX:+UseSerialGC", "-XX:TieredStopAtLevel=1", "-cp", classPath));
+        command.addAll(arguments);
+        return command;
+    }
+
+    /**
+     * Run an execution on the worker's standby JVM for the role: write the
+     * class name and then the program's input to it, and wait for it like
+     * any other process. A standby that died while idle is replaced first.
+     */
+    private ProcessResult runStandby(Path workspace, String role, String className, String stdin,
+            int timeoutSeconds) throws IOException, InterruptedException {
+        Path directory = standbyDirectory(workspace, role);
+        Process process = standbys.remove(directory);
+        if (process == null || !process.isAlive()) {
+            process = startStandby(workspace, role);
+        }
+
+        OutputStream control = process.getOutputStream();
+        // Fed from another thread: a program that doesn't read its input would block a large write
+        Thread.ofVirtual().start(() -> {
+            try (control) {
+                control.write((className + "\n").getBytes(StandardCharsets.UTF_8));
+                if (stdin != null) {
+                    control.write(stdin.getBytes(StandardCharsets.UTF_8));
+                }
+            } catch (IOException e) {
+                // The program exited without reading all of its input
+            }
+        });
+        return await(process, directory.resolve("stdout.txt"), directory.resolve("stderr.txt"), timeoutSeconds);
+    }
+
+    // Start the standbys the last execution used, before the worker is handed out again
+    private void replenishStandbys(Path workspace) {
+        if (!warmJvms) {
+            return;
+        }
+        for (String role : List.of(COMPILER, RUNNER)) {
+            Path directory = standbyDirectory(workspace, role);
+            if (standbys.containsKey(directory)) {
+                continue;
+            }
+            try {
+                standbys.put(directory, startStandby(workspace, role));
+            } catch (IOException e) {
+                // Tried again when the worker is next used
+                log.warn("Failed to start standby JVM in {}: {}", directory, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Start a JvmStandby for the role in the worker's workspace. Its output
+     * goes to its own directory, next to the workspace and out of the
+     * sandbox's reach, as for any other run; it gets a scratch directory as
+     * its temp directory.
+     */
+    private Process startStandby(Path workspace, String role) throws IOException {
+        Path directory = standbyDirectory(workspace, role);
+        Path scratch = directory.resolve("scratch");
+        deleteRecursively(directory);
+        Files.createDirectories(scratch);
+
+        String launcher = isolated ? SANDBOX_LAUNCHER : launcherDirectory.toString();
+        String workdir = isolated ? SANDBOX_WORKDIR : workspace.toString();
+        String tmpdir = "-Djava.io.tmpdir=" + (isolated ? SANDBOX_SCRATCH : scratch.toString());
+        List<String> mounts = List.of("--ro-bind", launcherDirectory.toString(), SANDBOX_LAUNCHER,
+                "--bind", scratch.toString(), SANDBOX_SCRATCH);
+        ProcessBuilder builder = role.equals(COMPILER)
+                ? sandboxed(workspace, List.of("java", "-XX:+UseSerialGC", tmpdir, "-cp", launcher,
+                        JvmStandby.class.getName(), COMPILER), compileLimits(), mounts)
+                : sandboxed(workspace, javaCommand(launcher + File.pathSeparator + workdir,
+                        List.of(tmpdir, JvmStandby.class.getName(), RUNNER)), executionLimits(false), mounts);
+        return builder.redirectOutput(directory.resolve("stdout.txt").toFile())
+                .redirectError(directory.resolve("stderr.txt").toFile())
+                .start();
+    }
+
+    private static Path standbyDirectory(Path workspace, String role) {
+        return workspace.resolveSibling(workspace.getFileName() + "-" + role);
+    }
+
+    private Map<String, Object> runCpp(Path workspace, String sourceCode, String stdin)
+            throws IOException, InterruptedException {
+        String key = CompiledArtifactCache.key("cpp", sourceCode);
+        if (!artifactCache.restore(key, workspace)) {
+            Files.writeString(workspace.resolve("main.cpp"), sourceCode);
+
+            ProcessResult compile = run(workspace, List.of("g++", "-std=c++17", "-O2", "-o", "main", "main.cpp"),
+                    null, compileTimeoutSeconds, compileLimits());
+            if (compile.exitCode() != 0 || compile.timedOut()) {
+                return compilationError(compile.stderr().isEmpty() ? compile.stdout() : compile.stderr());
+            }
+            artifactCache.store(key, workspace, List.of(workspace.resolve("main")));
+        }
+
+        return toResult(run(workspace, List.of("./main"), stdin, wallClockSeconds, executionLimits(true)));
+    }
+
+    private Map<String, Object> runInterpreted(Path workspace, String fileName, String sourceCode, String stdin,
+            List<String> command, boolean limitAddressSpace) throws IOException, InterruptedException {
+        Files.writeString(workspace.resolve(fileName), sourceCode);
+
+        ProcessResult exec = run(workspace, command, stdin, wallClockSeconds, executionLimits(limitAddressSpace));
+        // Interpreted languages report syntax errors at run time
+        if (exec.exitCode() != 0 && exec.stderr().contains("SyntaxError")) {
+            return compilationError(exec.stderr());
+        }
+        return toResult(exec);
+    }
+
+    // Compilers only get a CPU cap; they legitimately write large binaries
+    private String compileLimits() {
+        return "ulimit -t " + compileTimeoutSeconds + ";";
+    }
+
+    private String executionLimits(boolean limitAddressSpace) {
+        // ulimit -f counts 1 KiB blocks; leave headroom above the captured output size
+        String limits = "ulimit -t " + cpuSeconds + "; ulimit -f " + (maxOutputBytes / 1024 + 1024) + ";";
+        // Only inside the sandbox: outside it the cap would count every process of the application user
+        if (isolated) {
+            limits += " ulimit -u " + maxProcesses + ";";
+        }
+        if (limitAddressSpace) {
+            limits += " ulimit -v " + (memoryMb * 1024L) + ";";
+        }
+        return limits;
+    }
+
+    /**
+     * Run a command inside the workspace under the given ulimit caps, in the
+     * sandbox unless it is disabled. stdout and stderr go to files rather than
+     * pipes so a chatty program can't block on a full pipe.
+     */
+    private ProcessResult run(Path workspace, List<String> command, String stdin, int timeoutSeconds,
+            String limits) throws IOException, InterruptedException {
+        Path io = ioDirectory(workspace);
+        Path in = io.resolve("stdin.txt");
+        Path out = io.resolve("stdout.txt");
+        Path err = io.resolve("stderr.txt");
+        Files.writeString(in, stdin == null ? "" : stdin);
+
+        Process process = sandboxed(workspace, command, limits, List.of())
+                .redirectInput(in.toFile())
+                .redirectOutput(out.toFile())
+                .redirectError(err.toFile())
+                .start();
+        return await(process, out, err, timeoutSeconds);
+    }
+
+    /**
+     * A process builder for the command, run inside the workspace under the
+     * ulimit caps, in the sandbox unless it is disabled. mounts are further
+     * bubblewrap mount options, ignored without the sandbox.
+     */
+    private ProcessBuilder sandboxed(Path workspace, List<String> command, String limits, List<String> mounts) {
+        List<String> wrapped = new ArrayList<>();
+        if (isolated) {
+            wrapped.addAll(List.of("bwrap", "--unshare-all", "--unshare-user", "--uid", SANDBOX_ID,
+                    "--gid", SANDBOX_ID, "--die-with-parent", "--new-session", "--ro-bind", "/", "/"));
+            for (String dir : hiddenDirectories) {
+                wrapped.addAll(List.of("--tmpfs", dir));
+            }
+            wrapped.addAll(List.of("--proc", "/proc", "--dev", "/dev",
+                    "--bind", workspace.toString(), SANDBOX_WORKDIR));
+            wrapped.addAll(mounts);
+            wrapped.addAll(List.of("--chdir", SANDBOX_WORKDIR));
+        }
+        // Limits are set inside the sandbox so the process cap only counts the sandbox's own processes
+        wrapped.add("bash");
+        wrapped.add("-c");
+        wrapped.add(limits + " exec \"$0\" \"$@\"");
+        wrapped.addAll(command);
+
+        ProcessBuilder builder = new ProcessBuilder(wrapped).directory(workspace.toFile());
+        // Nothing from the application's environment (credentials included) reaches the program
+        builder.environment().clear();
+        builder.environment().put("PATH", path);
+        builder.environment().put("HOME", isolated ? SANDBOX_WORKDIR : workspace.toString());
+        return builder;
+    }
+
+    // Wait for a started process up to the wall-clock limit and collect what it wrote
+    private ProcessResult await(Process process, Path out, Path err, int timeoutSeconds)
+            throws IOException, InterruptedException {
+        boolean finished = process.waitFor(timeoutSeconds, TimeUnit.SECONDS);
+        // Also after a normal exit, for children still attached; in the sandbox the
+        // pid namespace has already taken any detached ones down with it
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        if (!finished) {
+            process.destroyForcibly();
+            process.waitFor(1, TimeUnit.SECONDS);
+        }
+        return new ProcessResult(readCapped(out), readCapped(err), finished ? process.exitValue() : -1, !finished);
+    }
+
+    private String readCapped(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return "";
+        }
+        try (InputStream is = Files.newInputStream(file)) {
+            return new String(is.readNBytes(maxOutputBytes), StandardCharsets.UTF_8);
+        }
+    }
+
+    private Map<String, Object> toResult(ProcessResult exec) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("stdout", exec.timedOut() || exec.exitCode() != 0 ? "" : exec.stdout());
+        // A process killed by a signal may leave stderr empty; still report it as a runtime error
+        String stderr = exec.stderr();
+        if (!exec.timedOut() && exec.exitCode() != 0 && stderr.isEmpty()) {
+            stderr = "Process exited with code " + exec.exitCode();
+        }
+        result.put("stderr", exec.exitCode() != 0 ? stderr : "");
+        result.put("exitCode", exec.timedOut() ? 1 : exec.exitCode());
+        result.put("timedOut", exec.timedOut());
+        result.put("compilationError", false);
+        return result;
+    }
+
+    private Map<String, Object> compilationError(String output) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("stdout", "");
+        result.put("stderr", output);
+        result.put("exitCode", 1);
+        result.put("timedOut", false);
+        result.put("compilationError", true);
+        return result;
+    }
+
+    private Map<String, Object> failure(String message) {
+        return Map.of("error", message, "stdout", "", "stderr", message, "exitCode", -1);
+    }
+
+    private void clean(Path workspace) {
+        for (Path dir : List.of(workspace, ioDirectory(workspace))) {
+            try (Stream<Path> files = Files.list(dir)) {
+                files.forEach(this::deleteRecursively);
+            } catch (IOException e) {
+                log.warn("Failed to clean judge workspace {}: {}", dir, e.getMessage());
+            }
+        }
+    }
+
+    private void deleteRecursively(Path path) {
+        if (path == null || !Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(path)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.deleteIfExists(p);
+                } catch (IOException ignored) {
+                }
+            });
+        } catch (IOException e) {
+            log.warn("Failed to delete {}: {}", path, e.getMessage());
+        }
+    }
+
+    private record ProcessResult(String stdout, String stderr, int exitCode, boolean timedOut) {
+    }
+}
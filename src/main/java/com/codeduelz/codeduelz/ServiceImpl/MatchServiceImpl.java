@@ -9,7 +9,9 @@ import com.codeduelz.codeduelz.repo.MatchRepo;
 import com.codeduelz.codeduelz.repo.ProblemRepo;
 import com.codeduelz.codeduelz.repo.ProfileRepo;
 import com.codeduelz.codeduelz.repo.UserRepo;
+import com.codeduelz.codeduelz.services.MatchCompletionService;
 import com.codeduelz.codeduelz.services.MatchService;
+import com.codeduelz.codeduelz.services.NotificationService;
 import com.codeduelz.codeduelz.services.ProblemService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
@@ -32,6 +34,10 @@ public class MatchServiceImpl implements MatchService {
     private ProfileRepo profileRepo;
     @Autowired
     private ProblemService problemService;
+    @Autowired
+    private MatchCompletionService matchCompletionService;
+    @Autowired
+    private NotificationService notificationService;
     @Override
     public MatchDto createMatch(User user, CreateMatchDto dto) {
         User opponent = userRepo.findById(dto.getOpponentUserId())
@@ -62,11 +68,20 @@ public class MatchServiceImpl implements MatchService {
         }
         User winner = userRepo.findById(dto.getWinnerUserId())
                 .orElseThrow(() -> new RuntimeException("Winner not found"));
-        match.setEndTime(LocalDateTime.now());
-        match.setStatus(MatchStatus.COMPLETED);
-        matchRepo.save(match);
-        updateProfileStats(match.getPlayer1(), winner);
-        updateProfileStats(match.getPlayer2(), winner);
+        if (!winner.getUserId().equals(match.getPlayer1().getUserId())
+                && !winner.getUserId().equals(match.getPlayer2().getUserId())) {
+            throw new RuntimeException("Winner is not a player of this match");
+        }
+        if (profileRepo.findByUserIn(List.of(match.getPlayer1(), match.getPlayer2())).size() < 2) {
+            throw new RuntimeException("Profile not found");
+        }
+
+        // Same transactional, exactly-once path as a winning submission
+        MatchCompletionService.Completion completion = matchCompletionService.declareWinner(match, winner);
+        if (completion == null) {
+            throw new RuntimeException("Match already completed");
+        }
+        completion.notifications().forEach(notificationService::push);
     }
 
     @Override
@@ -117,21 +132,6 @@ public class MatchServiceImpl implements MatchService {
         return dto;
     }
 
-    private void updateProfileStats(User player, User winner) {
-        var profile = profileRepo.findByUser(player)
-                .orElseThrow(() -> new RuntimeException("Profile not found"));
-
-        profile.setTotalMatches(profile.getTotalMatches() + 1);
-        if (player.getUserId().equals(winner.getUserId())) {
-            profile.setWins(profile.getWins() + 1);
-            profile.setRating(profile.getRating() + 10);
-        } else {
-            profile.setLosses(profile.getLosses() + 1);
-            profile.setRating(profile.getRating() - 5);
-        }
-        profileRepo.save(profile);
-    }
-
     private MatchDto mapToMatchDto(Match match) {
         MatchDto dto = new MatchDto();
         dto.setMatchId(match.getMatchId());
@@ -0,0 +1,134 @@
+package com.codeduelz.codeduelz.ServiceImpl;
+
+import com.codeduelz.codeduelz.services.MatchmakingQueue.Pair;
+import com.codeduelz.codeduelz.services.MatchmakingQueue.Ticket;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Players waiting for a match at one difficulty, indexed by rating.
+ *
+ * Tickets live in two skip lists, one ordered by rating (for nearest-rating
+ * lookups) and one by arrival (so the longest waiters are matched first),
+ * plus a username index. Insert, remove and nearest-neighbour lookup are all
+ * O(log n).
+ *
+ * Only one thread may modify a pool (see {@link MatchmakingQueues}); the
+ * concurrent collections let other threads read sizes and membership.
+ */
+public class MatchmakingPool {
+
+    private static final Comparator<Ticket> BY_RATING = Comparator.comparingInt(Ticket::rating)
+            .thenComparingLong(Ticket::seq);
+    private static final Comparator<Ticket> BY_ARRIVAL = Comparator.comparingLong(Ticket::seq);
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private final ConcurrentSkipListSet<Ticket> byRating = new ConcurrentSkipListSet<>(BY_RATING);
+    private final ConcurrentSkipListSet<Ticket> byArrival = new ConcurrentSkipListSet<>(BY_ARRIVAL);
+    private final Map<String, Ticket> byUsername = new ConcurrentHashMap<>();
+
+    private final int initialWindow;
+    private final int windowGrowthPerSecond;
+    private final int maxWindow;
+
+    public MatchmakingPool(int initialWindow, int windowGrowthPerSecond, int maxWindow) {
+        this.initialWindow = initialWindow;
+        this.windowGrowthPerSecond = windowGrowthPerSecond;
+        this.maxWindow = maxWindow;
+    }
+
+    /**
+     * Queue a player. Returns false if they are already waiting here.
+     */
+    public boolean add(String username, int rating) {
+        return add(new Ticket(username, rating, SEQUENCE.incrementAndGet(), System.currentTimeMillis()));
+    }
+
+    /**
+     * Put a ticket back, keeping its original place in line, e.g. after match
+     * creation failed.
+     */
+    public boolean add(Ticket ticket) {
+        if (byUsername.putIfAbsent(ticket.username(), ticket) != null) {
+            return false;
+        }
+        byRating.add(ticket);
+        byArrival.add(ticket);
+        return true;
+    }
+
+    public boolean remove(String username) {
+        Ticket ticket = byUsername.remove(username);
+        if (ticket == null) {
+            return false;
+        }
+        byRating.remove(ticket);
+        byArrival.remove(ticket);
+        return true;
+    }
+
+    public boolean contains(String username) {
+        return byUsername.containsKey(username);
+    }
+
+    public int size() {
+        return byUsername.size();
+    }
+
+    /**
+     * Pair up waiting players, longest waiters first. Each player is paired
+     * with the closest-rated other player if the rating gap is within the
+     * search window of either of them; the window widens the longer a player
+     * has waited. Paired players are removed from the pool.
+     */
+    public List<Pair> match(long nowMs) {
+        List<Pair> pairs = new ArrayList<>();
+        for (Ticket ticket : byArrival) {
+            if (byUsername.get(ticket.username()) != ticket) {
+                continue; // already paired this tick
+            }
+            Ticket opponent = nearest(ticket);
+            if (opponent == null) {
+                continue;
+            }
+            int gap = Math.abs(ticket.rating() - opponent.rating());
+            if (gap > Math.max(window(ticket, nowMs), window(opponent, nowMs))) {
+                continue;
+            }
+            take(ticket);
+            take(opponent);
+            pairs.add(new Pair(ticket, opponent));
+        }
+        return pairs;
+    }
+
+    private Ticket nearest(Ticket ticket) {
+        Ticket lower = byRating.lower(ticket);
+        Ticket higher = byRating.higher(ticket);
+        if (lower == null) {
+            return higher;
+        }
+        if (higher == null) {
+            return lower;
+        }
+        return ticket.rating() - lower.rating() <= higher.rating() - ticket.rating() ? lower : higher;
+    }
+
+    int window(Ticket ticket, long nowMs) {
+        long waitedSeconds = Math.max(0, nowMs - ticket.joinedAtMs()) / 1000;
+        return (int) Math.min(maxWindow, initialWindow + waitedSeconds * windowGrowthPerSecond);
+    }
+
+    private void take(Ticket ticket) {
+        byUsername.remove(ticket.username());
+        byRating.remove(ticket);
+        byArrival.remove(ticket);
+    }
+}
@@ -0,0 +1,173 @@
+package com.codeduelz.codeduelz.ServiceImpl;
+
+import com.codeduelz.codeduelz.services.MatchmakingQueue;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BiConsumer;
+
+/**
+ * The default, in-memory matchmaking queue: the pools for every difficulty,
+ * plus an index of which pool each waiting player is in. Only pairs players
+ * connected to this node; use matchmaking.backend=redis to run several.
+ *
+ * The pools have a single writer: join, leave and requeue only record a
+ * command, and the matchmaker thread applies pending commands at the start of
+ * every match() call before pairing anyone. So a player can't be paired while
+ * they are being moved or removed, and nothing is lost or paired twice.
+ * Paired players stay claimed until release() or requeue(), and joins are
+ * ignored in the meantime, so they can't be queued for a second match while
+ * their first one is being set up.
+ */
+@Component
+@ConditionalOnProperty(name = "matchmaking.backend", havingValue = "memory", matchIfMissing = true)
+public class MatchmakingQueues implements MatchmakingQueue {
+
+    private final int initialWindow;
+    private final int windowGrowthPerSecond;
+    private final int maxWindow;
+
+    private final ConcurrentLinkedQueue<Runnable> pending = new ConcurrentLinkedQueue<>();
+
+    // Written only by the matchmaker thread; concurrent maps so sizes can be read anywhere
+    private final Map<String, MatchmakingPool> pools = new ConcurrentHashMap<>();
+    // username -> the pool they are waiting in
+    private final Map<String, MatchmakingPool> waitingIn = new ConcurrentHashMap<>();
+    // Paired players whose match hasn't been created yet
+    private final Set<String> claimed = new HashSet<>();
+
+    /**
+     * A player who just joined accepts opponents within initialWindow rating
+     * points; the window grows by windowGrowthPerSecond per second of waiting,
+     * up to maxWindow.
+     */
+    public MatchmakingQueues(@Value("${matchmaking.window.initial:50}") int initialWindow,
+            @Value("${matchmaking.window.growth-per-second:10}") int windowGrowthPerSecond,
+            @Value("${matchmaking.window.max:400}") int maxWindow) {
+        this.initialWindow = initialWindow;
+        this.windowGrowthPerSecond = windowGrowthPerSecond;
+        this.maxWindow = maxWindow;
+    }
+
+    /**
+     * Queue a player for a difficulty. Takes effect on the next match() call;
+     * ignored if they are already waiting for it or have just been paired.
+     */
+    @Override
+    public void join(String username, String difficulty, int rating) {
+        pending.add(() -> applyJoin(username, difficulty, rating));
+    }
+
+    @Override
+    public void leave(String username) {
+        pending.add(() -> {
+            MatchmakingPool pool = waitingIn.remove(username);
+            if (pool != null) {
+                pool.remove(username);
+            }
+        });
+    }
+
+    /**
+     * Put a paired player's ticket back in its pool, keeping its place in line,
+     * e.g. after the match couldn't be created.
+     */
+    @Override
+    public void requeue(String difficulty, Ticket ticket) {
+        pending.add(() -> {
+            claimed.remove(ticket.username());
+            if (!waitingIn.containsKey(ticket.username())) {
+                MatchmakingPool pool = pool(difficulty);
+                pool.add(ticket);
+                waitingIn.put(ticket.username(), pool);
+            }
+        });
+    }
+
+    /**
+     * Mark a paired player's match as created, so they may queue again.
+     */
+    @Override
+    public void release(String username) {
+        pending.add(() -> claimed.remove(username));
+    }
+
+    @Override
+    public boolean isWaiting(String username) {
+        return waitingIn.containsKey(username);
+    }
+
+    @Override
+    public int size(String difficulty) {
+        MatchmakingPool pool = pools.get(difficulty);
+        return pool == null ? 0 : pool.size();
+    }
+
+    /**
+     * Apply pending joins and leaves, then pair up players in every pool and
+     * hand each pair to the consumer along with its difficulty. Must only be
+     * called from one thread at a time.
+     */
+    @Override
+    public void match(long nowMs, BiConsumer<String, Pair> onPair) {
+        applyPending();
+        Map<String, List<Pair>> paired = new HashMap<>();
+        pools.forEach((difficulty, pool) -> {
+            List<Pair> pairs = pool.match(nowMs);
+            for (Pair pair : pairs) {
+                claim(pair.first().username());
+                claim(pair.second().username());
+            }
+            if (!pairs.isEmpty()) {
+                paired.put(difficulty, pairs);
+            }
+        });
+        paired.forEach((difficulty, pairs) -> pairs.forEach(pair -> onPair.accept(difficulty, pair)));
+    }
+
+    // Applies only what was queued before this call, so a steady stream of
+    // joins can't keep the matcher from ever getting to pairing
+    private void applyPending() {
+        Runnable end = () -> {
+        };
+        pending.add(end);
+        Runnable command;
+        while ((command = pending.poll()) != end) {
+            command.run();
+        }
+    }
+
+    private void applyJoin(String username, String difficulty, int rating) {
+        if (claimed.contains(username)) {
+            return;
+        }
+        MatchmakingPool pool = pool(difficulty);
+        MatchmakingPool current = waitingIn.get(username);
+        if (current == pool) {
+            return;
+        }
+        if (current != null) {
+            current.remove(username);
+        }
+        pool.add(username, rating);
+        waitingIn.put(username, pool);
+    }
+
+    private void claim(String username) {
+        waitingIn.remove(username);
+        claimed.add(username);
+    }
+
+    private MatchmakingPool pool(String difficulty) {
+        return pools.computeIfAbsent(difficulty,
+                k -> new MatchmakingPool(initialWindow, windowGrowthPerSecond, maxWindow));
+    }
+}
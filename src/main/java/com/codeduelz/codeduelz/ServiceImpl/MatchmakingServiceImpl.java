@@ -1,27 +1,42 @@
 package com.codeduelz.codeduelz.ServiceImpl;
 
 import com.codeduelz.codeduelz.dtos.CodeExecutionResultDto;
+import com.codeduelz.codeduelz.dtos.TestCaseProgressDto;
+import com.codeduelz.codeduelz.dtos.TestCaseResultDto;
 import com.codeduelz.codeduelz.entities.*;
 import com.codeduelz.codeduelz.repo.*;
 import com.codeduelz.codeduelz.services.CodeExecutionService;
+import com.codeduelz.codeduelz.services.JudgeScheduler;
 import com.codeduelz.codeduelz.services.LeetCodeProblemService;
+import com.codeduelz.codeduelz.services.MatchClock;
+import com.codeduelz.codeduelz.services.MatchCompletionService;
+import com.codeduelz.codeduelz.services.MatchPayloadCache;
+import com.codeduelz.codeduelz.services.MatchmakingQueue;
 import com.codeduelz.codeduelz.services.MatchmakingService;
 import com.codeduelz.codeduelz.services.NotificationService;
+import com.codeduelz.codeduelz.services.ProblemSnapshotCache;
+import com.codeduelz.codeduelz.services.VerdictCache;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 @Service
 @RequiredArgsConstructor
@@ -33,44 +48,138 @@ public class MatchmakingServiceImpl implements MatchmakingService {
     private final LeetCodeProblemService leetCodeProblemService;
     private final ProfileRepo profileRepo;
     private final CodeExecutionService codeExecutionService;
-    private final TestCaseRepo testCaseRepo;
+    private final ProblemSnapshotCache problemSnapshotCache;
     private final SubmissionRepo submissionRepo;
     private final NotificationService notificationService;
+    private final VerdictCache verdictCache;
+    private final JudgeScheduler judgeScheduler;
+    private final MatchPayloadCache matchPayloadCache;
+    private final MatchClock matchClock;
+    private final MatchCompletionService matchCompletionService;
+    // Waiting players per difficulty, ordered by rating
+    private final MatchmakingQueue queues;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
-    // Queue per difficulty: difficulty -> list of waiting usernames
-    private final Map<String, ConcurrentLinkedQueue<String>> queues = new ConcurrentHashMap<>();
-    // Track which match each user is in: username -> matchId
-    private final Map<String, Long> userToMatch = new ConcurrentHashMap<>();
+    private static final String JUDGE_BUSY_MESSAGE = "Judge is busy, please try again in a few seconds";
+    private static final String JUDGE_FAILED_MESSAGE = "The judge could not run your code, please try again";
 
+    // How often waiting players are paired up
+    @Value("${matchmaking.tick-ms:500}")
+    private long tickMs;
+
+    // Threads that look up joining players and assemble paired matches
+    @Value("${matchmaking.workers:4}")
+    private int matchmakingWorkers;
+
+    // Matches whose completion is being written on this node
+    private final Set<Long> completing = ConcurrentHashMap.newKeySet();
+
+    // username -> their join request while its lookup is pending; removed once
+    // they are queued or leave, so only in-flight joins are held
+    private final Map<String, Object> joinRequests = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService matchmaker;
+    private ExecutorService matchmakingPool;
+
+    @PostConstruct
+    public void startMatchmaker() {
+        AtomicInteger workerIndex = new AtomicInteger();
+        matchmakingPool = Executors.newFixedThreadPool(matchmakingWorkers, r -> {
+            Thread t = new Thread(r, "matchmaking-" + workerIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        matchmaker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "matchmaker");
+            t.setDaemon(true);
+            return t;
+        });
+        matchmaker.scheduleWithFixedDelay(this::matchTick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+        matchClock.start(matchId -> matchmakingPool.execute(() -> timeOut(matchId)));
+    }
+
+    @PreDestroy
+    public void stopMatchmaker() {
+        matchmaker.shutdownNow();
+        matchmakingPool.shutdownNow();
+    }
+
+    /**
+     * Queue a player. The rating lookup runs on the matchmaking pool so the
+     * WebSocket inbound thread never waits on the database.
+     */
     @Override
     public void joinQueue(String username, String difficulty) {
         log.info("JOIN QUEUE: {} for {}", username, difficulty);
-        ConcurrentLinkedQueue<String> queue = queues.computeIfAbsent(difficulty, k -> new ConcurrentLinkedQueue<>());
-        if (queue.contains(username))
-            return;
-        queue.add(username);
-        log.info("QUEUE SIZE for {}: {}", difficulty, queue.size());
-        tryMatch(difficulty);
+        Object request = new Object();
+        joinRequests.put(username, request);
+        matchmakingPool.execute(() -> {
+            int rating;
+            try {
+                User user = userRepo.findByUserName(username).orElse(null);
+                if (user == null) {
+                    joinRequests.remove(username, request);
+                    return;
+                }
+                rating = profileRepo.findByUser(user).map(Profile::getRating).orElse(1000);
+            } catch (Exception ex) {
+                log.error("Failed to queue {}: {}", username, ex.getMessage(), ex);
+                joinRequests.remove(username, request);
+                return;
+            }
+            // Skip if the player left or joined again while we were looking them up.
+            // Holding the map entry keeps this ordered with leaveQueue; once
+            // queued, the request is done with and leaveQueue finds them in the queue.
+            joinRequests.computeIfPresent(username, (k, current) -> {
+                if (current != request) {
+                    return current;
+                }
+                queues.join(username, difficulty, rating);
+                return null;
+            });
+        });
     }
 
     @Override
     public void leaveQueue(String username) {
-        queues.values().forEach(q -> q.remove(username));
+        joinRequests.compute(username, (k, current) -> {
+            queues.leave(username);
+            return null;
+        });
     }
 
-    private void tryMatch(String difficulty) {
-        ConcurrentLinkedQueue<String> queue = queues.get(difficulty);
-        if (queue == null || queue.size() < 2) {
-            log.info("NOT ENOUGH IN QUEUE: {}", (queue == null ? 0 : queue.size()));
-            return;
+    /**
+     * Pair waiting players in every difficulty. Runs on the matchmaker thread;
+     * the matches themselves are assembled and published on the matchmaking
+     * pool, so a slow database never holds up pairing.
+     */
+    private void matchTick() {
+        try {
+            queues.match(System.currentTimeMillis(),
+                    (difficulty, pair) -> matchmakingPool.execute(() -> assembleMatch(difficulty, pair)));
+        } catch (Exception ex) {
+            // An exception escaping a scheduled task would cancel all future ticks
+            log.error("Matchmaking tick failed: {}", ex.getMessage(), ex);
         }
+    }
 
-        String username1 = queue.poll();
-        String username2 = queue.poll();
-        log.info("MATCHING: {} vs {}", username1, username2);
-        if (username1 == null || username2 == null)
-            return;
+    private void assembleMatch(String difficulty, MatchmakingQueue.Pair pair) {
+        try {
+            createMatch(difficulty, pair);
+        } catch (Exception ex) {
+            log.error("Failed to assemble match on {}: {}", difficulty, ex.getMessage(), ex);
+        } finally {
+            // Lets the players queue again; a no-op for players createMatch requeued
+            queues.release(pair.first().username());
+            queues.release(pair.second().username());
+        }
+    }
+
+    private void createMatch(String difficulty, MatchmakingQueue.Pair pair) {
+        String username1 = pair.first().username();
+        String username2 = pair.second().username();
+        log.info("MATCHING: {} ({}) vs {} ({})", username1, pair.first().rating(),
+                username2, pair.second().rating());
 
         User player1 = userRepo.findByUserName(username1).orElse(null);
         User player2 = userRepo.findByUserName(username2).orElse(null);
@@ -87,8 +196,8 @@ public class MatchmakingServiceImpl implements MatchmakingService {
                 diff = Difficulty.MEDIUM;
             }
 
-            Map<String, Object> problemData = leetCodeProblemService.getRandomProblemData(diff);
-            Problem problem = (Problem) problemData.get("problem");
+            LeetCodeProblemService.ProblemChoice choice = leetCodeProblemService.getRandomProblem(diff, player1, player2);
+            Problem problem = choice.problem();
             if (problem == null) {
                 throw new IllegalStateException("Problem data was loaded but problem entity is null");
             }
@@ -102,44 +211,20 @@ public class MatchmakingServiceImpl implements MatchmakingService {
             match.setTimeLimitSeconds(900);
             Match saved = matchRepo.save(match);
 
-            userToMatch.put(username1, saved.getMatchId());
-            userToMatch.put(username2, saved.getMatchId());
-
-            Map<String, Object> problemPayload = new HashMap<>();
-            problemPayload.put("title", problem.getTitle());
-            problemPayload.put("description", problem.getDescription());
-            problemPayload.put("difficulty", problem.getDifficulty() != null ? problem.getDifficulty().name() : "MEDIUM");
-            problemPayload.put("url", "https://leetcode.com/problems/" + problem.getProblemSlug() + "/");
-            problemPayload.put("examples", problemData.get("examples"));
-            problemPayload.put("constraints", problemData.get("constraints"));
-            problemPayload.put("codeSnippets", problemData.get("codeSnippets"));
-
-            List<TestCase> testCases = testCaseRepo.findByProblem(problem);
-            List<Map<String, String>> testCaseData = new ArrayList<>();
-            for (TestCase tc : testCases) {
-                Map<String, String> tcMap = new HashMap<>();
-                tcMap.put("input", tc.getInput());
-                tcMap.put("expectedOutput", tc.getExpectedOutput());
-                testCaseData.add(tcMap);
-            }
-            problemPayload.put("testCases", testCaseData);
+            matchClock.schedule(saved);
 
-            Map<String, Object> matchData = new HashMap<>();
-            matchData.put("matchId", saved.getMatchId());
-            matchData.put("problem", problemPayload);
-            matchData.put("timeLimitSeconds", 900);
-            matchData.put("startTimeMs", System.currentTimeMillis());
-            matchData.put("player1", Map.of("name", username1));
-            matchData.put("player2", Map.of("name", username2));
+            Map<String, Object> matchData = matchPayloadCache.matchMessage(saved.getMatchId(), problem,
+                    () -> leetCodeProblemService.problemDetails(choice.source()), 900, username1, username2);
 
-            log.info("SENDING MATCH: {}", matchData);
+            log.info("SENDING MATCH: {} on problem {} to {} and {}", saved.getMatchId(), problem.getProblemId(),
+                    username1, username2);
             messaging.convertAndSend("/topic/user/" + username1, matchData);
             messaging.convertAndSend("/topic/user/" + username2, matchData);
         } catch (Exception ex) {
             log.error("Failed to create match for users '{}' and '{}' on difficulty '{}': {}",
                     username1, username2, difficulty, ex.getMessage(), ex);
-            queue.offer(username1);
-            queue.offer(username2);
+            queues.requeue(difficulty, pair.first());
+            queues.requeue(difficulty, pair.second());
         }
     }
 
@@ -155,19 +240,24 @@ public class MatchmakingServiceImpl implements MatchmakingService {
             return;
         }
 
-        List<TestCase> testCases = testCaseRepo.findByProblem(match.getProblem());
+        ProblemSnapshotCache.Snapshot snapshot = problemSnapshotCache.get(match.getProblem());
+        List<TestCase> testCases = snapshot.testCases();
         if (testCases.isEmpty()) {
             sendRunResult(username, errorResult("No test cases available for this problem"));
             return;
         }
 
-        // Run asynchronously so we don't block the WebSocket thread
-        CompletableFuture.runAsync(() -> {
-            String methodName = match.getProblem().getMethodName();
-            CodeExecutionResultDto result = codeExecutionService.evaluateAgainstTestCases(code, language, testCases,
-                    methodName);
-            sendRunResult(username, result);
+        // Run on the judge pool so we don't block the WebSocket thread
+        boolean scheduled = judgeScheduler.trySchedule(username, JudgeScheduler.Priority.RUN, () -> {
+            CodeExecutionResultDto result = evaluate(snapshot, code, language,
+                    (index, tcResult) -> messaging.convertAndSend("/topic/user/" + username + "/run-result",
+                            progressFrame(index, testCases.size(), tcResult)));
+            sendRunResult(username, CodeExecutionService.VERDICT_INTERNAL_ERROR.equals(result.getStatus())
+                    ? errorResult(JUDGE_FAILED_MESSAGE) : result);
         });
+        if (!scheduled) {
+            sendRunResult(username, errorResult(JUDGE_BUSY_MESSAGE));
+        }
     }
 
     /**
@@ -186,7 +276,8 @@ public class MatchmakingServiceImpl implements MatchmakingService {
         if (user == null)
             return;
 
-        List<TestCase> testCases = testCaseRepo.findByProblem(match.getProblem());
+        ProblemSnapshotCache.Snapshot snapshot = problemSnapshotCache.get(match.getProblem());
+        List<TestCase> testCases = snapshot.testCases();
 
         // Save the submission
         Submission submission = new Submission();
@@ -211,11 +302,24 @@ public class MatchmakingServiceImpl implements MatchmakingService {
             return;
         }
 
-        // Run code against test cases asynchronously
-        CompletableFuture.runAsync(() -> {
-            String methodName = match.getProblem().getMethodName();
-            CodeExecutionResultDto result = codeExecutionService.evaluateAgainstTestCases(code, language, testCases,
-                    methodName);
+        // Run code against test cases on the judge pool
+        boolean scheduled = judgeScheduler.trySchedule(username, JudgeScheduler.Priority.SUBMIT, () -> {
+            CodeExecutionResultDto result = evaluate(snapshot, code, language,
+                    (index, tcResult) -> {
+                        messaging.convertAndSend("/topic/user/" + username + "/submit-result",
+                                progressFrame(index, testCases.size(), tcResult));
+                        // Let the opponent see how far along the submitter is, without the outputs
+                        messaging.convertAndSend("/topic/match/" + matchId + "/progress",
+                                Map.of("username", username, "index", index,
+                                        "passed", tcResult.isPassed(), "totalTests", testCases.size()));
+                    });
+
+            if (CodeExecutionService.VERDICT_INTERNAL_ERROR.equals(result.getStatus())) {
+                // Never really judged, so it doesn't count against the player
+                submissionRepo.delete(submission);
+                sendSubmitResult(username, errorResult(JUDGE_FAILED_MESSAGE));
+                return;
+            }
 
             // Update submission with results
             submission.setTestCasesPassed(result.getTotalPassed());
@@ -249,36 +353,67 @@ public class MatchmakingServiceImpl implements MatchmakingService {
             // Send results back to the submitter
             sendSubmitResult(username, result);
         });
+        if (!scheduled) {
+            // Never judged, so don't leave it behind as PENDING
+            submissionRepo.delete(submission);
+            sendSubmitResult(username, errorResult(JUDGE_BUSY_MESSAGE));
+        }
     }
 
-    private void declareWinner(Match match, User winner, String winnerName) {
-        match.setWinnerId(winner.getUserId());
-        match.setStatus(MatchStatus.COMPLETED);
-        match.setEndTime(LocalDateTime.now());
+    /**
+     * Judge code against the test cases, reusing the verdict if the exact same
+     * code was already judged for this problem.
+     */
+    private CodeExecutionResultDto evaluate(ProblemSnapshotCache.Snapshot snapshot, String code, String language,
+            CodeExecutionService.TestCaseListener listener) {
+        Problem problem = snapshot.problem();
+        return verdictCache.getOrEvaluate(problem.getProblemId(), snapshot.version(), code, language, listener,
+                notify -> codeExecutionService.evaluateAgainstTestCases(code, language, snapshot.testCases(),
+                        snapshot.harness(), notify));
+    }
 
-        boolean isPlayer1 = match.getPlayer1().getUserId().equals(winner.getUserId());
-        match.setPlayer1RatingChange(isPlayer1 ? 25 : -15);
-        match.setPlayer2RatingChange(isPlayer1 ? -15 : 25);
-        matchRepo.save(match);
+    private TestCaseProgressDto progressFrame(int index, int totalTests, TestCaseResultDto result) {
+        return new TestCaseProgressDto("TEST_CASE_RESULT", index, totalTests, result);
+    }
+
+    /**
+     * Complete an ongoing match, exactly once: of any concurrent winner
+     * declarations and timeouts, only one gets a completion back. The
+     * conditional update in MatchCompletionService decides across nodes; the
+     * in-memory latch stops a losing racer on this node before it reaches the
+     * database. Returns null for the losers.
+     */
+    private MatchCompletionService.Completion complete(Long matchId,
+            Supplier<MatchCompletionService.Completion> completion) {
+        if (!completing.add(matchId)) {
+            return null;
+        }
+        try {
+            MatchCompletionService.Completion completed = completion.get();
+            if (completed != null) {
+                matchClock.cancel(matchId);
+            }
+            return completed;
+        } finally {
+            completing.remove(matchId);
+        }
+    }
 
-        updateRatings(match);
+    private void declareWinner(Match match, User winner, String winnerName) {
+        MatchCompletionService.Completion completion = complete(match.getMatchId(),
+                () -> matchCompletionService.declareWinner(match, winner));
+        if (completion == null) {
+            log.info("Match {} already completed, not declaring {} the winner", match.getMatchId(), winnerName);
+            return;
+        }
 
-        // Notify both players of the match result
+        // Committed; now tell both players
         Map<String, Object> result = Map.of(
                 "matchId", match.getMatchId(),
                 "winnerId", winner.getUserId(),
                 "winnerName", winnerName);
         messaging.convertAndSend("/topic/match/" + match.getMatchId(), result);
-
-        // Persist match result notifications
-        User loser = isPlayer1 ? match.getPlayer2() : match.getPlayer1();
-        notificationService.create(winner, NotificationType.MATCH_RESULT,
-                "You won against " + loser.getUsername() + "! +25 ELO", loser.getUsername(), match.getMatchId());
-        notificationService.create(loser, NotificationType.MATCH_RESULT,
-                "You lost to " + winner.getUsername() + ". -15 ELO", winner.getUsername(), match.getMatchId());
-
-        userToMatch.remove(match.getPlayer1().getUsername());
-        userToMatch.remove(match.getPlayer2().getUsername());
+        completion.notifications().forEach(notificationService::push);
     }
 
     private void sendRunResult(String username, CodeExecutionResultDto result) {
@@ -293,62 +428,42 @@ public class MatchmakingServiceImpl implements MatchmakingService {
         return new CodeExecutionResultDto(message, List.of(), null, 0, 0);
     }
 
-    private void updateRatings(Match match) {
-        var p1Profile = profileRepo.findByUser(match.getPlayer1()).orElse(null);
-        var p2Profile = profileRepo.findByUser(match.getPlayer2()).orElse(null);
-
-        if (p1Profile != null) {
-            p1Profile.setRating(p1Profile.getRating() + match.getPlayer1RatingChange());
-            p1Profile.setTotalMatches(p1Profile.getTotalMatches() + 1);
-            if (match.getWinnerId().equals(match.getPlayer1().getUserId())) {
-                p1Profile.setWins(p1Profile.getWins() + 1);
-            } else {
-                p1Profile.setLosses(p1Profile.getLosses() + 1);
-            }
-            profileRepo.save(p1Profile);
-        }
-        if (p2Profile != null) {
-            p2Profile.setRating(p2Profile.getRating() + match.getPlayer2RatingChange());
-            p2Profile.setTotalMatches(p2Profile.getTotalMatches() + 1);
-            if (match.getWinnerId().equals(match.getPlayer2().getUserId())) {
-                p2Profile.setWins(p2Profile.getWins() + 1);
-            } else {
-                p2Profile.setLosses(p2Profile.getLosses() + 1);
-            }
-            profileRepo.save(p2Profile);
-        }
-    }
-
+    /**
+     * A client reporting that its match clock ran out. Ignored until the
+     * server's own clock agrees, which also times the match out by itself.
+     */
     @Override
     public void handleTimeout(Long matchId) {
         Match match = matchRepo.findById(matchId).orElse(null);
         if (match == null || match.getStatus() == MatchStatus.COMPLETED) return;
+        if (!matchClock.isExpired(match)) {
+            log.info("Ignoring early timeout for match {}", matchId);
+            return;
+        }
+        timeOut(match);
+    }
 
-        match.setStatus(MatchStatus.COMPLETED);
-        match.setEndTime(LocalDateTime.now());
-        match.setWinnerId(null);
-        match.setPlayer1RatingChange(-10);
-        match.setPlayer2RatingChange(-10);
-        matchRepo.save(match);
-
-        for (User player : List.of(match.getPlayer1(), match.getPlayer2())) {
-            profileRepo.findByUser(player).ifPresent(p -> {
-                p.setTotalMatches(p.getTotalMatches() + 1);
-                p.setLosses(p.getLosses() + 1);
-                p.setRating(p.getRating() - 10);
-                profileRepo.save(p);
-            });
+    // Called by the match clock at the match's deadline
+    private void timeOut(Long matchId) {
+        try {
+            Match match = matchRepo.findById(matchId).orElse(null);
+            if (match == null || match.getStatus() == MatchStatus.COMPLETED) return;
+            timeOut(match);
+        } catch (Exception ex) {
+            log.error("Failed to time out match {}: {}", matchId, ex.getMessage(), ex);
+        }
+    }
+
+    private void timeOut(Match match) {
+        Long matchId = match.getMatchId();
+        MatchCompletionService.Completion completion = complete(matchId,
+                () -> matchCompletionService.timeOut(match));
+        if (completion == null) {
+            return;
         }
 
         messaging.convertAndSend("/topic/match/" + matchId,
                 Map.of("matchId", matchId, "winnerId", "TIMEOUT", "winnerName", "TIMEOUT"));
-
-        notificationService.create(match.getPlayer1(), NotificationType.MATCH_RESULT,
-                "Match timed out. -10 ELO", match.getPlayer2().getUsername(), matchId);
-        notificationService.create(match.getPlayer2(), NotificationType.MATCH_RESULT,
-                "Match timed out. -10 ELO", match.getPlayer1().getUsername(), matchId);
-
-        userToMatch.remove(match.getPlayer1().getUsername());
-        userToMatch.remove(match.getPlayer2().getUsername());
+        completion.notifications().forEach(notificationService::push);
     }
 }
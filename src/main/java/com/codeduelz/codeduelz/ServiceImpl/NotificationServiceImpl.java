@@ -22,19 +22,31 @@ public class NotificationServiceImpl implements NotificationService {
 
     @Override
     public void create(User recipient, NotificationType type, String message, String fromUsername, Long referenceId) {
+        push(store(recipient, type, message, fromUsername, referenceId));
+    }
+
+    @Override
+    public Notification store(User recipient, NotificationType type, String message, String fromUsername,
+            Long referenceId) {
         Notification n = new Notification();
         n.setUser(recipient);
         n.setType(type);
         n.setMessage(message);
         n.setFromUsername(fromUsername);
         n.setReferenceId(referenceId);
-        notificationRepo.save(n);
+        return notificationRepo.save(n);
+    }
 
+    @Override
+    public void push(Notification n) {
+        NotificationType type = n.getType();
         // Push real-time update via WebSocket
         // Skip for challenge types — they already have their own dedicated popup channel (/challenge)
         if (type != NotificationType.CHALLENGE_RECEIVED && type != NotificationType.CHALLENGE_DECLINED) {
+            User recipient = n.getUser();
+            String fromUsername = n.getFromUsername();
             messaging.convertAndSend("/topic/user/" + recipient.getUsername() + "/notifications",
-                    Map.of("type", type.name(), "message", message, "fromUsername", fromUsername != null ? fromUsername : "",
+                    Map.of("type", type.name(), "message", n.getMessage(), "fromUsername", fromUsername != null ? fromUsername : "",
                             "unreadCount", notificationRepo.countByUserAndIsReadFalse(recipient)));
         }
     }
@@ -0,0 +1,251 @@
+package com.codeduelz.codeduelz.ServiceImpl;
+
+import com.codeduelz.codeduelz.entities.Difficulty;
+import com.codeduelz.codeduelz.services.MatchmakingQueue;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.BiConsumer;
+
+/**
+ * Matchmaking queue shared by every app node through Redis, so players
+ * connected to different nodes can be paired. Enable with
+ * matchmaking.backend=redis.
+ *
+ * Each difficulty is a sorted set by rating plus a sorted set by join time,
+ * and a hash records which difficulty each player waits in. Joins, leaves and
+ * pairing are Lua scripts, so each is atomic: when several nodes match at
+ * once, every player is popped by exactly one of them. Paired players are
+ * claimed until matchmaking.redis.claim-ttl-ms from now (a sorted set scored
+ * by expiry), so a node dying mid-assembly can't lock them out for good.
+ *
+ * Pools exist for the Difficulty values only, so every key a script touches
+ * is known up front and passed in KEYS. All keys share the {matchmaking} hash
+ * tag, so the scripts also work on a Redis cluster.
+ */
+@Component
+@ConditionalOnProperty(name = "matchmaking.backend", havingValue = "redis")
+@RequiredArgsConstructor
+public class RedisMatchmakingQueue implements MatchmakingQueue {
+
+    private static final String PREFIX = "{matchmaking}:";
+    private static final String WAITING = PREFIX + "waiting";
+    private static final String CLAIMS = PREFIX + "claims";
+
+    private static final List<String> DIFFICULTIES = Arrays.stream(Difficulty.values()).map(Enum::name).toList();
+    private static final String POOL_NAMES = String.join(",", DIFFICULTIES);
+
+    // KEYS: the rating and arrival key of every pool, in the order of the pool
+    // names in ARGV[1], then the waiting hash and the claims set
+    private static final String POOLS = """
+            local names = {}
+            for name in string.gmatch(ARGV[1], '[^,]+') do table.insert(names, name) end
+            local waitingKey, claimsKey = KEYS[#names * 2 + 1], KEYS[#names * 2 + 2]
+            local function pool(d)
+              for i, name in ipairs(names) do
+                if name == d then return KEYS[2 * i - 1], KEYS[2 * i] end
+              end
+            end
+            """;
+
+    // ARGV: pool names, username, difficulty, rating, nowMs
+    private static final RedisScript<Long> JOIN = RedisScript.of(POOLS + """
+            local u, d = ARGV[2], ARGV[3]
+            local claimedUntil = redis.call('ZSCORE', claimsKey, u)
+            if claimedUntil and tonumber(claimedUntil) > tonumber(ARGV[5]) then return 0 end
+            local current = redis.call('HGET', waitingKey, u)
+            if current == d then return 0 end
+            if current then
+              local rating, arrival = pool(current)
+              redis.call('ZREM', rating, u)
+              redis.call('ZREM', arrival, u)
+            end
+            local rating, arrival = pool(d)
+            redis.call('ZADD', rating, ARGV[4], u)
+            redis.call('ZADD', arrival, ARGV[5], u)
+            redis.call('HSET', waitingKey, u, d)
+            return 1
+            """, Long.class);
+
+    // ARGV: pool names, username
+    private static final RedisScript<Long> LEAVE = RedisScript.of(POOLS + """
+            local u = ARGV[2]
+            local current = redis.call('HGET', waitingKey, u)
+            if not current then return 0 end
+            local rating, arrival = pool(current)
+            redis.call('ZREM', rating, u)
+            redis.call('ZREM', arrival, u)
+            redis.call('HDEL', waitingKey, u)
+            return 1
+            """, Long.class);
+
+    // ARGV: pool names, username, difficulty, rating, joinedAtMs
+    private static final RedisScript<Long> REQUEUE = RedisScript.of(POOLS + """
+            local u, d = ARGV[2], ARGV[3]
+            redis.call('ZREM', claimsKey, u)
+            if redis.call('HEXISTS', waitingKey, u) == 1 then return 0 end
+            local rating, arrival = pool(d)
+            redis.call('ZADD', rating, ARGV[4], u)
+            redis.call('ZADD', arrival, ARGV[5], u)
+            redis.call('HSET', waitingKey, u, d)
+            return 1
+            """, Long.class);
+
+    // Same rules as MatchmakingPool.match(): longest waiters first, each paired
+    // with the closest-rated player if the gap is within either one's window.
+    // KEYS: the pool's rating and arrival key, the waiting hash, the claims set
+    // ARGV: nowMs, initialWindow, growthPerSecond, maxWindow, claimTtlMs, scanLimit
+    // Returns username, rating, joinedAtMs of both players for every pair.
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> MATCH = RedisScript.of("""
+            local ratingKey, arrivalKey, waitingKey, claimsKey = KEYS[1], KEYS[2], KEYS[3], KEYS[4]
+            local now, initial, growth, max = tonumber(ARGV[1]), tonumber(ARGV[2]), tonumber(ARGV[3]), tonumber(ARGV[4])
+            redis.call('ZREMRANGEBYSCORE', claimsKey, '-inf', now)
+            local function window(joined)
+              local waited = math.floor(math.max(0, now - joined) / 1000)
+              return math.min(max, initial + waited * growth)
+            end
+            local function neighbour(u, cmd, from, to)
+              for _, v in ipairs(redis.call(cmd, ratingKey, from, to, 'LIMIT', 0, 2)) do
+                if v ~= u then return v end
+              end
+              return false
+            end
+            local function take(u)
+              redis.call('ZREM', ratingKey, u)
+              redis.call('ZREM', arrivalKey, u)
+              redis.call('HDEL', waitingKey, u)
+              redis.call('ZADD', claimsKey, now + tonumber(ARGV[5]), u)
+            end
+            local out = {}
+            local waiting = redis.call('ZRANGE', arrivalKey, 0, tonumber(ARGV[6]) - 1, 'WITHSCORES')
+            for i = 1, #waiting, 2 do
+              local u, joined = waiting[i], waiting[i + 1]
+              local rating = redis.call('ZSCORE', ratingKey, u)
+              if rating then
+                local r = tonumber(rating)
+                local lower = neighbour(u, 'ZREVRANGEBYSCORE', r, '-inf')
+                local higher = neighbour(u, 'ZRANGEBYSCORE', r, '+inf')
+                local lowerRating = lower and redis.call('ZSCORE', ratingKey, lower)
+                local higherRating = higher and redis.call('ZSCORE', ratingKey, higher)
+                local opponent, opponentRating = higher, higherRating
+                if lower and (not higher or r - tonumber(lowerRating) <= tonumber(higherRating) - r) then
+                  opponent, opponentRating = lower, lowerRating
+                end
+                if opponent then
+                  local opponentJoined = redis.call('ZSCORE', arrivalKey, opponent)
+                  local gap = math.abs(r - tonumber(opponentRating))
+                  if gap <= math.max(window(tonumber(joined)), window(tonumber(opponentJoined))) then
+                    take(u)
+                    take(opponent)
+                    for _, v in ipairs({ u, rating, joined, opponent, opponentRating, opponentJoined }) do
+                      table.insert(out, v)
+                    end
+                  end
+                end
+              end
+            end
+            return out
+            """, List.class);
+
+    private final StringRedisTemplate redis;
+
+    @Value("${matchmaking.window.initial:50}")
+    private int initialWindow;
+
+    @Value("${matchmaking.window.growth-per-second:10}")
+    private int windowGrowthPerSecond;
+
+    @Value("${matchmaking.window.max:400}")
+    private int maxWindow;
+
+    // How long paired players stay claimed if their node never releases them
+    @Value("${matchmaking.redis.claim-ttl-ms:60000}")
+    private long claimTtlMs;
+
+    // Longest waiters considered per difficulty per tick, to keep each script run short
+    @Value("${matchmaking.redis.scan-limit:500}")
+    private int scanLimit;
+
+    @Override
+    public void join(String username, String difficulty, int rating) {
+        redis.execute(JOIN, keys(), POOL_NAMES, username, pool(difficulty), String.valueOf(rating),
+                String.valueOf(System.currentTimeMillis()));
+    }
+
+    @Override
+    public void leave(String username) {
+        redis.execute(LEAVE, keys(), POOL_NAMES, username);
+    }
+
+    @Override
+    public void requeue(String difficulty, Ticket ticket) {
+        redis.execute(REQUEUE, keys(), POOL_NAMES, ticket.username(), pool(difficulty),
+                String.valueOf(ticket.rating()), String.valueOf(ticket.joinedAtMs()));
+    }
+
+    @Override
+    public void release(String username) {
+        redis.opsForZSet().remove(CLAIMS, username);
+    }
+
+    @Override
+    public boolean isWaiting(String username) {
+        return redis.opsForHash().hasKey(WAITING, username);
+    }
+
+    @Override
+    public int size(String difficulty) {
+        Long size = redis.opsForZSet().zCard(PREFIX + "rating:" + pool(difficulty));
+        return size == null ? 0 : size.intValue();
+    }
+
+    @Override
+    public void match(long nowMs, BiConsumer<String, Pair> onPair) {
+        for (String difficulty : DIFFICULTIES) {
+            List<?> popped = redis.execute(MATCH,
+                    List.of(PREFIX + "rating:" + difficulty, PREFIX + "arrival:" + difficulty, WAITING, CLAIMS),
+                    String.valueOf(nowMs), String.valueOf(initialWindow), String.valueOf(windowGrowthPerSecond),
+                    String.valueOf(maxWindow), String.valueOf(claimTtlMs), String.valueOf(scanLimit));
+            if (popped == null) {
+                continue;
+            }
+            for (int i = 0; i + 5 < popped.size(); i += 6) {
+                onPair.accept(difficulty, new Pair(ticket(popped, i), ticket(popped, i + 3)));
+            }
+        }
+    }
+
+    // The pool a requested difficulty maps to; unknown ones fall back to
+    // MEDIUM, as match creation does
+    private static String pool(String difficulty) {
+        String name = difficulty == null ? "" : difficulty.toUpperCase(Locale.ROOT);
+        return DIFFICULTIES.contains(name) ? name : Difficulty.MEDIUM.name();
+    }
+
+    // Every key JOIN, LEAVE and REQUEUE may touch, in the layout POOLS expects
+    private static List<String> keys() {
+        List<String> keys = new ArrayList<>();
+        for (String difficulty : DIFFICULTIES) {
+            keys.add(PREFIX + "rating:" + difficulty);
+            keys.add(PREFIX + "arrival:" + difficulty);
+        }
+        keys.add(WAITING);
+        keys.add(CLAIMS);
+        return keys;
+    }
+
+    private static Ticket ticket(List<?> popped, int i) {
+        long joinedAtMs = (long) Double.parseDouble(String.valueOf(popped.get(i + 2)));
+        return new Ticket(String.valueOf(popped.get(i)), (int) Double.parseDouble(String.valueOf(popped.get(i + 1))),
+                joinedAtMs, joinedAtMs);
+    }
+}
@@ -3,6 +3,8 @@ package com.codeduelz.codeduelz.ServiceImpl;
 import com.codeduelz.codeduelz.entities.Problem;
 import com.codeduelz.codeduelz.entities.TestCase;
 import com.codeduelz.codeduelz.repo.TestCaseRepo;
+import com.codeduelz.codeduelz.services.MatchPayloadCache;
+import com.codeduelz.codeduelz.services.ProblemSnapshotCache;
 import com.codeduelz.codeduelz.services.TestCaseService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -13,11 +15,20 @@ import java.util.List;
 public class TestCaseServiceImpl implements TestCaseService {
     @Autowired
     private TestCaseRepo testCaseRepository;
+    @Autowired
+    private ProblemSnapshotCache problemSnapshotCache;
+    @Autowired
+    private MatchPayloadCache matchPayloadCache;
     public TestCase addTestCase(TestCase testCase) {
-        return testCaseRepository.save(testCase);
+        TestCase saved = testCaseRepository.save(testCase);
+        // Judging must see the new test case; verdicts against the old set are no longer valid
+        problemSnapshotCache.invalidate(saved.getProblem().getProblemId());
+        // New matches must list the new test case too
+        matchPayloadCache.invalidateProblem(saved.getProblem().getProblemId());
+        return saved;
     }
 
     public List<TestCase> getTestCasesByProblem(Problem problem) {
-        return testCaseRepository.findByProblem(problem);
+        return problemSnapshotCache.testCases(problem);
     }
 }
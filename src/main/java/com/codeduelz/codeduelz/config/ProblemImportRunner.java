@@ -0,0 +1,27 @@
+package com.codeduelz.codeduelz.config;
+
+import com.codeduelz.codeduelz.services.ProblemImporter;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Seeds the problem and test case tables from the problem catalog at startup.
+ * Enable with problems.import-on-startup=true, or for a single run with the
+ * --problems.import-on-startup=true command line argument.
+ */
+@Component
+@ConditionalOnProperty(name = "problems.import-on-startup", havingValue = "true")
+public class ProblemImportRunner implements CommandLineRunner {
+
+    private final ProblemImporter problemImporter;
+
+    public ProblemImportRunner(ProblemImporter problemImporter) {
+        this.problemImporter = problemImporter;
+    }
+
+    @Override
+    public void run(String... args) {
+        problemImporter.importAll();
+    }
+}
@@ -0,0 +1,27 @@
+package com.codeduelz.codeduelz.config;
+
+import com.codeduelz.codeduelz.services.RatingEngine;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Recomputes every rating from match history at startup, e.g. after changing
+ * rating.engine or its parameters. Enable for one start with
+ * rating.rebuild-on-startup=true.
+ */
+@Component
+@ConditionalOnProperty(name = "rating.rebuild-on-startup", havingValue = "true")
+public class RatingRebuildRunner implements CommandLineRunner {
+
+    private final RatingEngine ratingEngine;
+
+    public RatingRebuildRunner(RatingEngine ratingEngine) {
+        this.ratingEngine = ratingEngine;
+    }
+
+    @Override
+    public void run(String... args) {
+        ratingEngine.rebuildRatings();
+    }
+}
@@ -0,0 +1,121 @@
+package com.codeduelz.codeduelz.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+import java.util.UUID;
+
+/**
+ * Fans messages for the STOMP broker out to every app node through Redis
+ * pub/sub. With matchmaking.backend=redis the two players of a match may be
+ * connected to different nodes, and the simple broker only reaches the
+ * subscribers of its own node: the match found message, the opponent's
+ * progress and the result would otherwise never arrive.
+ *
+ * Every message sent to the broker is still delivered locally, and also
+ * published; the other nodes hand it to their own broker. Messages that came
+ * in from Redis are marked so they are not published again.
+ */
+@Component
+@ConditionalOnProperty(name = "matchmaking.backend", havingValue = "redis")
+@Slf4j
+public class RedisBrokerRelay implements ChannelInterceptor, MessageListener {
+
+    private static final String CHANNEL = "codeduelz:broker";
+    private static final String RELAYED_HEADER = "codeduelzRelayed";
+
+    private final StringRedisTemplate redis;
+    private final MessageChannel brokerChannel;
+    private final RedisMessageListenerContainer listeners = new RedisMessageListenerContainer();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // Tells this node's own messages apart when they come back from Redis
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private record Envelope(String node, String destination, String contentType, byte[] payload) {
+    }
+
+    public RedisBrokerRelay(StringRedisTemplate redis, RedisConnectionFactory connectionFactory,
+            @Lazy @Qualifier("brokerChannel") MessageChannel brokerChannel) {
+        this.redis = redis;
+        this.brokerChannel = brokerChannel;
+        listeners.setConnectionFactory(connectionFactory);
+        listeners.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    @PostConstruct
+    public void start() {
+        listeners.afterPropertiesSet();
+        listeners.start();
+    }
+
+    @PreDestroy
+    public void stop() throws Exception {
+        listeners.destroy();
+    }
+
+    /**
+     * Publish a message on its way to this node's broker.
+     */
+    @Override
+    public org.springframework.messaging.Message<?> preSend(org.springframework.messaging.Message<?> message,
+            MessageChannel channel) {
+        if (message.getHeaders().containsKey(RELAYED_HEADER)
+                || SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE
+                || !(message.getPayload() instanceof byte[] payload)) {
+            return message;
+        }
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destination == null) {
+            return message;
+        }
+        try {
+            MimeType contentType = SimpMessageHeaderAccessor.wrap(message).getContentType();
+            redis.convertAndSend(CHANNEL, objectMapper.writeValueAsString(new Envelope(nodeId, destination,
+                    contentType == null ? null : contentType.toString(), payload)));
+        } catch (Exception e) {
+            // Local subscribers still get it; only players on other nodes miss out
+            log.warn("Failed to relay message for {} to other nodes: {}", destination, e.getMessage());
+        }
+        return message;
+    }
+
+    /**
+     * Deliver a message published by another node to this node's broker.
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            Envelope envelope = objectMapper.readValue(message.getBody(), Envelope.class);
+            if (nodeId.equals(envelope.node())) {
+                return;
+            }
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.setDestination(envelope.destination());
+            if (envelope.contentType() != null) {
+                accessor.setContentType(MimeType.valueOf(envelope.contentType()));
+            }
+            accessor.setHeader(RELAYED_HEADER, Boolean.TRUE);
+            brokerChannel.send(MessageBuilder.createMessage(envelope.payload(), accessor.getMessageHeaders()));
+        } catch (Exception e) {
+            log.warn("Failed to deliver a relayed broker message: {}", e.getMessage());
+        }
+    }
+}
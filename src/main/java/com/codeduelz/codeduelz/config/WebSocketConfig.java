@@ -1,18 +1,25 @@
 package com.codeduelz.codeduelz.config;
 
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.*;
 
 @Configuration
 @EnableWebSocketMessageBroker
+@RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    // Only with matchmaking.backend=redis, when players may sit on different nodes
+    private final ObjectProvider<RedisBrokerRelay> brokerRelay;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         config.enableSimpleBroker("/topic", "/queue");
         config.setApplicationDestinationPrefixes("/app");
         config.setUserDestinationPrefix("/user");
+        brokerRelay.ifAvailable(relay -> config.configureBrokerChannel().interceptors(relay));
     }
 
     @Override
@@ -3,6 +3,8 @@ package com.codeduelz.codeduelz.controller;
 import com.codeduelz.codeduelz.entities.*;
 import com.codeduelz.codeduelz.repo.*;
 import com.codeduelz.codeduelz.services.LeetCodeProblemService;
+import com.codeduelz.codeduelz.services.MatchClock;
+import com.codeduelz.codeduelz.services.MatchPayloadCache;
 import com.codeduelz.codeduelz.services.NotificationService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -30,8 +32,9 @@ public class ChallengeController {
     private final SimpMessagingTemplate messaging;
     private final UserRepo userRepo;
     private final MatchRepo matchRepo;
-    private final TestCaseRepo testCaseRepo;
     private final LeetCodeProblemService leetCodeProblemService;
+    private final MatchPayloadCache matchPayloadCache;
+    private final MatchClock matchClock;
     private final NotificationService notificationService;
 
     // ── Send challenge invite ────────────────────────────────────────────────
@@ -107,7 +110,7 @@ public class ChallengeController {
             return;
         }
 
-        // Pick a random problem at the chosen difficulty
+        // Pick a problem at the chosen difficulty that neither player has played
         Difficulty diff;
         try {
             diff = Difficulty.valueOf(difficulty);
@@ -115,8 +118,8 @@ public class ChallengeController {
             diff = Difficulty.MEDIUM;
         }
 
-        Map<String, Object> problemData = leetCodeProblemService.getRandomProblemData(diff);
-        Problem problem = (Problem) problemData.get("problem");
+        LeetCodeProblemService.ProblemChoice choice = leetCodeProblemService.getRandomProblem(diff, challenger, challenged);
+        Problem problem = choice.problem();
 
         // Create the match
         Match match = new Match();
@@ -127,34 +130,11 @@ public class ChallengeController {
         match.setStartTime(LocalDateTime.now());
         match.setTimeLimitSeconds(900);
         Match saved = matchRepo.save(match);
+        matchClock.schedule(saved);
 
-        // Build problem payload (same structure as normal matchmaking)
-        Map<String, Object> problemPayload = new HashMap<>();
-        problemPayload.put("title", problem.getTitle());
-        problemPayload.put("description", problem.getDescription());
-        problemPayload.put("difficulty", problem.getDifficulty() != null ? problem.getDifficulty().name() : "MEDIUM");
-        problemPayload.put("url", "https://leetcode.com/problems/" + problem.getProblemSlug() + "/");
-        problemPayload.put("examples", problemData.get("examples"));
-        problemPayload.put("constraints", problemData.get("constraints"));
-        problemPayload.put("codeSnippets", problemData.get("codeSnippets"));
-
-        List<TestCase> testCases = testCaseRepo.findByProblem(problem);
-        List<Map<String, String>> testCaseData = new ArrayList<>();
-        for (TestCase tc : testCases) {
-            Map<String, String> tcMap = new HashMap<>();
-            tcMap.put("input", tc.getInput());
-            tcMap.put("expectedOutput", tc.getExpectedOutput());
-            testCaseData.add(tcMap);
-        }
-        problemPayload.put("testCases", testCaseData);
-
-        Map<String, Object> matchMsg = new HashMap<>();
-        matchMsg.put("matchId", saved.getMatchId());
-        matchMsg.put("problem", problemPayload);
-        matchMsg.put("timeLimitSeconds", 900);
-        matchMsg.put("startTimeMs", System.currentTimeMillis());
-        matchMsg.put("player1", Map.of("name", fromUsername));
-        matchMsg.put("player2", Map.of("name", toUsername));
+        // Same message as normal matchmaking, sharing its cached problem payload
+        Map<String, Object> matchMsg = matchPayloadCache.matchMessage(saved.getMatchId(), problem,
+                () -> leetCodeProblemService.problemDetails(choice.source()), 900, fromUsername, toUsername);
 
         // Deliver to both players on the same topic used by normal matchmaking
         messaging.convertAndSend("/topic/user/" + fromUsername, matchMsg);
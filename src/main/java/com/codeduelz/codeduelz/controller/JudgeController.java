@@ -0,0 +1,26 @@
+package com.codeduelz.codeduelz.controller;
+
+import com.codeduelz.codeduelz.services.ExecutionTracer;
+import com.codeduelz.codeduelz.services.JudgeScheduler;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/judge")
+@RequiredArgsConstructor
+public class JudgeController {
+    private final JudgeScheduler judgeScheduler;
+    private final ExecutionTracer executionTracer;
+
+    @GetMapping("/metrics")
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>(judgeScheduler.metrics());
+        metrics.put("execution", executionTracer.metrics());
+        return metrics;
+    }
+}
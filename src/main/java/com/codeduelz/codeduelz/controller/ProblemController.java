@@ -2,20 +2,31 @@ package com.codeduelz.codeduelz.controller;
 
 import com.codeduelz.codeduelz.entities.Difficulty;
 import com.codeduelz.codeduelz.entities.Problem;
+import com.codeduelz.codeduelz.services.LeetCodeProblemService;
 import com.codeduelz.codeduelz.services.ProblemService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
 @RequestMapping("/problems")
 @RestController
 public class ProblemController {
     @Autowired
     private ProblemService problemService;
+    @Autowired
+    private LeetCodeProblemService leetCodeProblemService;
     @GetMapping("/random")
     public Problem getRandomProblem(@RequestParam Difficulty difficulty) {
         return problemService.getRandomProblem(difficulty);
     }
 
+    @GetMapping("/catalog/metrics")
+    public Map<String, Object> catalogMetrics() {
+        return leetCodeProblemService.metrics();
+    }
+
 }
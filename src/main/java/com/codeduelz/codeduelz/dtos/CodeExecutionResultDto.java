@@ -12,7 +12,7 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 public class CodeExecutionResultDto {
-    private String status;           // "ACCEPTED", "WRONG_ANSWER", "COMPILATION_ERROR", "RUNTIME_ERROR", "TIME_LIMIT_EXCEEDED"
+    private String status;           // "ACCEPTED", "WRONG_ANSWER", "COMPILATION_ERROR", "RUNTIME_ERROR", "TIME_LIMIT_EXCEEDED", "INTERNAL_ERROR"
     private List<TestCaseResultDto> testCaseResults;
     private String compilationError; // null if no compile error
     private int totalPassed;
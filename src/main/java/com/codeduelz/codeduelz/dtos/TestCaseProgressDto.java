@@ -0,0 +1,21 @@
+package com.codeduelz.codeduelz.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Incremental frame sent on run-result / submit-result while judging is still
+ * in progress. The final frame on the same topic is a CodeExecutionResultDto.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class TestCaseProgressDto {
+    private String type;             // always "TEST_CASE_RESULT"
+    private int index;               // position of the test case in the problem's test case list
+    private int totalTests;
+    private TestCaseResultDto result;
+}
@@ -30,7 +30,13 @@ public class Match {
     @Enumerated(EnumType.STRING)
     private MatchStatus status;
     private Long winnerId;
+    // Names as the naming strategy derives them, pinned for RatingEngine's batched SQL
+    @Column(name = "player1rating_change")
     private Integer player1RatingChange;
+    @Column(name = "player2rating_change")
     private Integer player2RatingChange;
     private Integer timeLimitSeconds;
+    // Completed without a result, e.g. long expired by a restart; left out of ratings
+    @Column(nullable = false, columnDefinition = "boolean default false")
+    private boolean abandoned;
 }
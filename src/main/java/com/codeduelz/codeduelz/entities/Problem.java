@@ -7,7 +7,8 @@ import lombok.Setter;
 @Entity
 @Getter
 @Setter
-@Table(name = "problems")
+@Table(name = "problems", uniqueConstraints = @UniqueConstraint(name = "uk_problems_leetcode_id",
+        columnNames = "leetcode_id"))
 public class Problem {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -27,4 +28,9 @@ public class Problem {
 
     // Method name for auto-wrapping (e.g. "twoSum", "convertToTitle")
     private String methodName;
+
+    // Its declaration in the Java code snippet (e.g. "public int[] twoSum(int[] nums, int target)"),
+    // which gives the parameter types the test harness is generated for
+    @Column(columnDefinition = "TEXT")
+    private String methodSignature;
 }
@@ -24,6 +24,8 @@ public class Profile {
     private Integer losses=0;
     @Column(nullable = false)
     private Integer rating=1000;
+    // Glicko-2 rating deviation; null until rated with rating.engine=glicko
+    private Double ratingDeviation;
     @Column(length = 500)
     private String bio;
     @Column(columnDefinition = "TEXT")
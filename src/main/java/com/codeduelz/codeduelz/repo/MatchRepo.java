@@ -3,12 +3,63 @@ package com.codeduelz.codeduelz.repo;
 import com.codeduelz.codeduelz.entities.Match;
 import com.codeduelz.codeduelz.entities.MatchStatus;
 import com.codeduelz.codeduelz.entities.User;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface MatchRepo extends JpaRepository<Match,Long> {
     List<Match> findByStatus(MatchStatus status);
     List<Match> findByPlayer1OrPlayer2(User player1, User player2);
 
+    /**
+     * Complete the match only if it is still ongoing (or created through the
+     * match API and not completed yet). Returns 1 for the one caller that
+     * completed it, 0 for everyone else.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Match m SET m.status = com.codeduelz.codeduelz.entities.MatchStatus.COMPLETED, "
+            + "m.winnerId = :winnerId, m.endTime = :endTime, "
+            + "m.player1RatingChange = :player1RatingChange, m.player2RatingChange = :player2RatingChange "
+            + "WHERE m.matchId = :matchId AND m.status <> com.codeduelz.codeduelz.entities.MatchStatus.COMPLETED")
+    int completeIfOngoing(Long matchId, Long winnerId, LocalDateTime endTime,
+            Integer player1RatingChange, Integer player2RatingChange);
+
+    /**
+     * Complete the match as abandoned, with no winner and no rating changes,
+     * only if it is still ongoing. Returns 1 if it was abandoned, 0 otherwise.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Match m SET m.status = com.codeduelz.codeduelz.entities.MatchStatus.COMPLETED, "
+            + "m.abandoned = true, m.winnerId = null, m.endTime = :endTime, "
+            + "m.player1RatingChange = 0, m.player2RatingChange = 0 "
+            + "WHERE m.matchId = :matchId AND m.status <> com.codeduelz.codeduelz.entities.MatchStatus.COMPLETED")
+    int abandonIfOngoing(Long matchId, LocalDateTime endTime);
+
+    /**
+     * Match ID, player IDs, winner, recorded rating changes and whether it was
+     * abandoned, of every completed match, in the order they ended. Must be
+     * consumed inside a transaction and closed.
+     */
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    @Query("SELECT m.matchId, m.player1.userId, m.player2.userId, m.winnerId, "
+            + "m.player1RatingChange, m.player2RatingChange, m.abandoned FROM Match m "
+            + "WHERE m.status = com.codeduelz.codeduelz.entities.MatchStatus.COMPLETED "
+            + "ORDER BY m.endTime, m.matchId")
+    Stream<Object[]> streamCompletedResults();
+
+    /**
+     * LeetCode ids of every problem a user has played a match on.
+     */
+    @Query("SELECT DISTINCT m.problem.leetcodeId FROM Match m "
+            + "WHERE m.player1.userId = :userId OR m.player2.userId = :userId")
+    List<String> findPlayedLeetcodeIds(Long userId);
 }
@@ -3,7 +3,10 @@ package com.codeduelz.codeduelz.repo;
 import com.codeduelz.codeduelz.entities.Profile;
 import com.codeduelz.codeduelz.entities.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -11,4 +14,17 @@ public interface ProfileRepo extends JpaRepository<Profile,Long> {
     Optional<Profile> findByUser(User user);
     Optional<Profile> findByUser_UserId(Long userId);
     List<Profile> findTop10ByOrderByRatingDesc();
+    List<Profile> findByUserIn(Collection<User> users);
+
+    /**
+     * Add one finished match to a player's profile in place, so concurrent
+     * results for the same player don't overwrite each other. A null
+     * ratingDeviation leaves the stored deviation unchanged.
+     */
+    @Modifying
+    @Query("UPDATE Profile p SET p.rating = p.rating + :ratingChange, "
+            + "p.ratingDeviation = COALESCE(:ratingDeviation, p.ratingDeviation), "
+            + "p.totalMatches = p.totalMatches + 1, p.wins = p.wins + :wins, p.losses = p.losses + :losses "
+            + "WHERE p.user.userId = :userId")
+    int recordResult(Long userId, int ratingChange, Double ratingDeviation, int wins, int losses);
 }
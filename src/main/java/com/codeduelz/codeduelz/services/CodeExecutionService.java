@@ -3,45 +3,86 @@ package com.codeduelz.codeduelz.services;
 import com.codeduelz.codeduelz.dtos.CodeExecutionResultDto;
 import com.codeduelz.codeduelz.dtos.TestCaseResultDto;
 import com.codeduelz.codeduelz.entities.TestCase;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
 
 @Service
+@RequiredArgsConstructor
 public class CodeExecutionService {
 
-    // Using JDoodle API for code execution
-    @Value("${jdoodle.api.url}")
-    private String jdoodleApiUrl;
-
-    @Value("${jdoodle.client.id}")
-    private String clientId;
-
-    @Value("${jdoodle.client.secret}")
-    private String clientSecret;
-
-    private static final HttpClient httpClient = HttpClient.newBuilder()
-            .connectTimeout(Duration.ofSeconds(10))
-            .build();
-    private static final ObjectMapper objectMapper = new ObjectMapper();
+    // JDoodle by default, or the local sandbox (judge.backend=local)
+    private final ExecutionBackend executionBackend;
+    private final ExecutionTracer executionTracer;
+
+    // Fan test cases of a submission out concurrently instead of one by one
+    @Value("${judge.parallel.enabled:true}")
+    private boolean parallelEnabled;
+
+    // Upper bound on executions in flight across all submissions; never more
+    // than the backend can run at once (see ExecutionBackend.maxConcurrency)
+    @Value("${judge.parallel.max-in-flight:16}")
+    private int maxInFlight;
+
+    // Judge all test cases of a Java/C++ submission in a single wrapped program
+    @Value("${judge.batch.enabled:true}")
+    private boolean batchEnabled;
+
+    // "exact" keeps the normalized string comparison; "tokens" compares
+    // token by token, with numbers matched within judge.compare.float-tolerance
+    @Value("${judge.compare.mode:exact}")
+    private String compareMode;
+
+    @Value("${judge.compare.float-tolerance:1e-6}")
+    private double floatTolerance;
+
+    private static final String VERDICT_PASSED = "PASSED";
+    private static final String VERDICT_COMPILATION_ERROR = "COMPILATION_ERROR";
+    // The backend failed to run the code (unavailable, no free worker, API
+    // error). Says nothing about the code, so it is never cached or recorded.
+    public static final String VERDICT_INTERNAL_ERROR = "INTERNAL_ERROR";
+
+    // Markers printed by the batched harness around each test case's output
+    private static final String BATCH_CASE_DELIMITER = "<<<CDZ_CASE_END>>>";
+    private static final String BATCH_RUNTIME_ERROR_MARKER = "<<<CDZ_RUNTIME_ERROR>>>";
+    private static final java.util.regex.Pattern BATCH_SPLITTER =
+            java.util.regex.Pattern.compile(java.util.regex.Pattern.quote(BATCH_CASE_DELIMITER));
+
+    // Compiled once; these run against every submission's source
+    private static final java.util.regex.Pattern TYPE_DECLARATION =
+            java.util.regex.Pattern.compile("\\b(class|interface|enum)\\s+\\w+");
+    private static final java.util.regex.Pattern MAIN_METHOD =
+            java.util.regex.Pattern.compile("public\\s+static\\s+void\\s+main\\s*\\(");
+    private static final java.util.regex.Pattern PARAM_ASSIGNMENT =
+            java.util.regex.Pattern.compile("\\w+\\s*=");
+
+    // "Main.java:12: error: ..." (javac) or "main.cpp:12:5: error: ..." (gcc/clang)
+    private static final java.util.regex.Pattern COMPILE_ERROR_LINE =
+            java.util.regex.Pattern.compile("(?m)^\\S*?:(\\d+):(?:\\d+:)?\\s*(?:fatal )?error");
+    private static final String JAVA_HARNESS_HEADER = "import java.util.*;\nimport java.util.Arrays;\n\n";
+    private static final String CPP_HARNESS_HEADER = "#include <bits/stdc++.h>\nusing namespace std;\n\n";
+
+    private final ExecutorService testCaseExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private Semaphore inFlight;
+
+    @PostConstruct
+    public void init() {
+        inFlight = new Semaphore(Math.max(1, Math.min(maxInFlight, executionBackend.maxConcurrency())));
+    }
 
-    // Map frontend language keys to JDoodle language names and version indices
-    private static final Map<String, String[]> LANGUAGE_MAP = Map.of(
-            "cpp", new String[] { "cpp17", "0" },
-            "python", new String[] { "python3", "4" },
-            "java", new String[] { "java", "4" },
-            "javascript", new String[] { "nodejs", "4" });
+    @PreDestroy
+    public void shutdown() {
+        testCaseExecutor.shutdownNow();
+    }
 
     /**
-     * Execute code with the given stdin input using JDoodle API.
+     * Execute code with the given stdin input using the configured backend.
      * Returns a map with keys: stdout, stderr, exitCode, error
      */
     public Map<String, Object> executeCode(String sourceCode, String language, String stdin) {
@@ -53,100 +94,58 @@ public class CodeExecutionService {
      */
     public Map<String, Object> executeCode(String sourceCode, String language, String stdin,
             String methodName, String testInput) {
+        Supplier<String> caseMain = methodName == null || methodName.isEmpty() || testInput == null ? null
+                : "java".equalsIgnoreCase(language)
+                        ? () -> javaCaseMain(methodName, parseParamTypes(sourceCode.trim(), methodName), testInput)
+                        : () -> cppCaseMain(methodName, testInput);
+        return executeWrapped(sourceCode, language, stdin, caseMain);
+    }
+
+    /**
+     * Wrap the code as needed and execute it. caseMain supplies the main that
+     * calls a LeetCode-style Solution on one test case; null when there is
+     * none, and only asked for when the code is such a Solution.
+     */
+    private Map<String, Object> executeWrapped(String sourceCode, String language, String stdin,
+            Supplier<String> caseMain) {
+        long wrapStart = System.nanoTime();
         try {
             // Auto-wrap code in main method/function if needed
             if ("java".equalsIgnoreCase(language)) {
-                String originalCode = sourceCode;
-                sourceCode = wrapJavaCodeIfNeeded(sourceCode, methodName, testInput);
-                System.out.println("[DEBUG] Original code: " + originalCode);
-                System.out.println("[DEBUG] Wrapped code: " + sourceCode);
-            } else if ("cpp".equalsIgnoreCase(language) && methodName != null && !methodName.isEmpty()
-                    && testInput != null) {
-                String originalCode = sourceCode;
-                sourceCode = wrapCppCodeIfNeeded(sourceCode, methodName, testInput);
-                System.out.println("[DEBUG] Original C++ code: " + originalCode);
-                System.out.println("[DEBUG] Wrapped C++ code: " + sourceCode);
-            }
-            String[] langInfo = LANGUAGE_MAP.getOrDefault(language, LANGUAGE_MAP.get("cpp"));
-
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("clientId", clientId);
-            requestBody.put("clientSecret", clientSecret);
-            requestBody.put("script", sourceCode);
-            requestBody.put("language", langInfo[0]);
-            requestBody.put("versionIndex", langInfo[1]);
-            if (stdin != null && !stdin.isEmpty()) {
-                requestBody.put("stdin", stdin);
-            }
-
-            String json = objectMapper.writeValueAsString(requestBody);
-            System.out.println("[DEBUG] JDoodle request: " + json);
-
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(jdoodleApiUrl))
-                    .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(json))
-                    .timeout(Duration.ofSeconds(30))
-                    .build();
-
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            System.out.println("[DEBUG] JDoodle response status: " + response.statusCode());
-            System.out.println("[DEBUG] JDoodle response body: " + response.body());
-
-            if (response.statusCode() != 200) {
-                return Map.of("error", "JDoodle API error: HTTP " + response.statusCode(),
-                        "stdout", "", "stderr", "", "exitCode", -1);
-            }
-
-            JsonNode root = objectMapper.readTree(response.body());
-
-            // JDoodle response format:
-            // { "output": "...", "statusCode": 200, "memory": "...", "cpuTime": "..." }
-            // For compilation errors, output contains the error message
-            String output = root.has("output") ? root.get("output").asText() : "";
-            int statusCode = root.has("statusCode") ? root.get("statusCode").asInt() : -1;
-
-            // Check for compilation or runtime errors
-            // JDoodle returns statusCode 200 for successful execution
-            // Non-zero statusCode or error messages in output indicate failures
-            boolean hasError = statusCode != 200;
-            boolean isCompilationError = false;
-            String stderr = "";
-            String stdout = output;
-
-            // Detect compilation errors by checking for common error patterns
-            if (hasError || output.contains("error:") || output.contains("Error:") ||
-                    output.contains("Exception") || output.contains("SyntaxError") ||
-                    output.contains("compilation terminated")) {
-
-                // Check if it's a compilation error vs runtime error
-                if (output.contains("error:") && !output.contains("runtime error") ||
-                        output.contains("compilation terminated") ||
-                        output.contains("SyntaxError") ||
-                        (language.equals("java") && output.contains("error:"))) {
-                    isCompilationError = true;
-                    stderr = output;
-                    stdout = "";
-                } else if (hasError) {
-                    // Runtime error
-                    stderr = output;
-                    stdout = "";
-                }
+                executionTracer.payload("source", sourceCode);
+                sourceCode = wrapJavaCodeIfNeeded(sourceCode, caseMain);
+                executionTracer.payload("wrapped", sourceCode);
+            } else if ("cpp".equalsIgnoreCase(language) && caseMain != null) {
+                executionTracer.payload("source", sourceCode);
+                sourceCode = wrapCppCodeIfNeeded(sourceCode, caseMain);
+                executionTracer.payload("wrapped", sourceCode);
             }
-
-            Map<String, Object> result = new HashMap<>();
-            result.put("stdout", stdout);
-            result.put("stderr", stderr);
-            result.put("exitCode", hasError ? 1 : 0);
-            result.put("timedOut", false); // JDoodle handles timeouts internally
-            result.put("compilationError", isCompilationError);
-            System.out.println("[DEBUG] Execution result - stdout: '" + stdout + "', stderr: '" + stderr
-                    + "', exitCode: " + (hasError ? 1 : 0));
-            return result;
-
         } catch (Exception e) {
             return Map.of("error", "Execution failed: " + e.getMessage(),
                     "stdout", "", "stderr", e.getMessage(), "exitCode", -1);
+        } finally {
+            executionTracer.record(ExecutionTracer.Phase.WRAP, System.nanoTime() - wrapStart);
+        }
+        return executeScript(sourceCode, language, stdin);
+    }
+
+    /**
+     * Send a complete, already-wrapped program to the configured execution backend.
+     */
+    private Map<String, Object> executeScript(String sourceCode, String language, String stdin) {
+        long queuedAt = System.nanoTime();
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Map.of("error", "Execution interrupted", "stdout", "", "stderr", "", "exitCode", -1);
+        }
+        executionTracer.record(ExecutionTracer.Phase.QUEUE, System.nanoTime() - queuedAt);
+        try {
+            return executionTracer.time(ExecutionTracer.Phase.REMOTE,
+                    () -> executionBackend.execute(sourceCode, language, stdin));
+        } finally {
+            inFlight.release();
         }
     }
 
@@ -164,96 +163,426 @@ public class CodeExecutionService {
      */
     public CodeExecutionResultDto evaluateAgainstTestCases(String sourceCode, String language,
             List<TestCase> testCases, String methodName) {
-        List<TestCaseResultDto> results = new ArrayList<>();
-        int passed = 0;
-        String overallStatus = "ACCEPTED";
-        String compilationError = null;
+        return evaluateAgainstTestCases(sourceCode, language, testCases, methodName, null);
+    }
 
-        for (TestCase tc : testCases) {
-            // For Java and C++ with methodName, pass testInput for smart wrapping
-            Map<String, Object> execResult;
-            boolean needsWrapping = methodName != null && !methodName.isEmpty();
-            if (needsWrapping && ("java".equalsIgnoreCase(language) || "cpp".equalsIgnoreCase(language))) {
-                execResult = executeCode(sourceCode, language, tc.getInput(), methodName, tc.getInput());
-            } else {
-                execResult = executeCode(sourceCode, language, tc.getInput());
+    /**
+     * Evaluate code against a list of test cases, reporting each test case to the
+     * listener (if any) as soon as its result is known.
+     * When judge.parallel.enabled is set, all test cases are dispatched at once
+     * and the results are collected back in test case order.
+     */
+    public CodeExecutionResultDto evaluateAgainstTestCases(String sourceCode, String language,
+            List<TestCase> testCases, String methodName, TestCaseListener listener) {
+        return evaluateAgainstTestCases(sourceCode, language, testCases,
+                prepareHarness(methodName, null, testCases), listener);
+    }
+
+    /**
+     * Evaluate code against a problem's test cases, wrapping it with the
+     * problem's prepared harness (see prepareHarness; null if it has no
+     * method name).
+     */
+    public CodeExecutionResultDto evaluateAgainstTestCases(String sourceCode, String language,
+            List<TestCase> testCases, Harness harness, TestCaseListener listener) {
+        TestCaseListener notify = listener != null ? listener : (index, result) -> {
+        };
+        ExecutionTracer.Trace trace = executionTracer.start(language, testCases.size());
+        try (ExecutionTracer.Scope scope = trace.bind()) {
+            Harness fitted = executionTracer.time(ExecutionTracer.Phase.WRAP,
+                    () -> harnessFor(harness, sourceCode, language, testCases));
+            List<TestCaseOutcome> outcomes = null;
+            if (batchEnabled && testCases.size() > 1 && fitted != null
+                    && isBatchable(sourceCode, language, fitted.methodName())) {
+                outcomes = judgeBatched(sourceCode, language, testCases, fitted, notify);
+            }
+            if (outcomes == null) {
+                outcomes = parallelEnabled && testCases.size() > 1
+                        ? judgeConcurrently(sourceCode, language, testCases, fitted, notify)
+                        : judgeSequentially(sourceCode, language, testCases, fitted, notify);
+            }
+            CodeExecutionResultDto result = summarize(outcomes, testCases.size());
+            trace.finish(result.getStatus());
+            return result;
+        }
+    }
+
+    /**
+     * Receives per-test-case results while a submission is still being judged.
+     * Calls for one evaluation are made from a single thread, but not
+     * necessarily in test case order. Cases skipped after a compilation error
+     * are not reported.
+     */
+    @FunctionalInterface
+    public interface TestCaseListener {
+        void onResult(int index, TestCaseResultDto result);
+    }
+
+    /**
+     * The generated part of every program judged for a problem: for Java and
+     * C++, the main that runs all test cases in one execution and the mains
+     * that run one each, in test case order. Judging a submission only
+     * splices its class in front. The Java mains are generated for
+     * paramTypes; they are null when those are unknown, as is any part that
+     * couldn't be generated, and such parts are generated per submission.
+     */
+    public record Harness(String methodName, List<String> paramTypes, String javaBatchMain,
+            List<String> javaCaseMains, String cppBatchMain, List<String> cppCaseMains) {
+    }
+
+    /**
+     * Generate the harness for a problem's method and test cases, e.g. when
+     * its snapshot is loaded. signature is Java code declaring the method,
+     * such as the problem's snippet signature, and gives the parameter types;
+     * null if unknown. Returns null without a method name.
+     */
+    public Harness prepareHarness(String methodName, String signature, List<TestCase> testCases) {
+        if (methodName == null || methodName.isEmpty()) {
+            return null;
+        }
+        List<String> inputs = inputsOf(testCases);
+        List<String> paramTypes = signature != null ? parseParamTypes(signature, methodName) : null;
+        List<String> javaCaseMains = new ArrayList<>(inputs.size());
+        List<String> cppCaseMains = new ArrayList<>(inputs.size());
+        for (String input : inputs) {
+            javaCaseMains.add(paramTypes != null ? generated(() -> javaCaseMain(methodName, paramTypes, input)) : null);
+            cppCaseMains.add(generated(() -> cppCaseMain(methodName, input)));
+        }
+        return new Harness(methodName, paramTypes,
+                paramTypes != null ? generated(() -> javaBatchMain(methodName, paramTypes, inputs)) : null,
+                Collections.unmodifiableList(javaCaseMains), generated(() -> cppBatchMain(methodName, inputs)),
+                Collections.unmodifiableList(cppCaseMains));
+    }
+
+    // Null if the test inputs don't fit the generator; generated again, and
+    // the failure reported, when a submission needs it
+    private static String generated(Supplier<String> generator) {
+        try {
+            return generator.get();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The problem's harness, unless a Java solution declares the method with
+     * other parameter types than the harness was generated for; then one for
+     * the solution's own signature.
+     */
+    private Harness harnessFor(Harness harness, String sourceCode, String language, List<TestCase> testCases) {
+        if (harness == null || !"java".equalsIgnoreCase(language)) {
+            return harness;
+        }
+        String solution = sourceCode.trim();
+        if (parseParamTypes(solution, harness.methodName()).equals(harness.paramTypes())) {
+            return harness;
+        }
+        return prepareHarness(harness.methodName(), solution, testCases);
+    }
+
+    /**
+     * Only LeetCode-style Solution classes without their own main() can be
+     * driven by the batched harness.
+     */
+    private boolean isBatchable(String sourceCode, String language, String methodName) {
+        if (methodName == null || methodName.isEmpty()) {
+            return false;
+        }
+        String trimmed = sourceCode.trim();
+        if ("java".equalsIgnoreCase(language)) {
+            return TYPE_DECLARATION.matcher(trimmed).find() && !MAIN_METHOD.matcher(trimmed).find();
+        }
+        if ("cpp".equalsIgnoreCase(language)) {
+            return !trimmed.contains("int main(") && !trimmed.contains("int main (");
+        }
+        return false;
+    }
+
+    /**
+     * Compile and run every test case in one remote execution. The harness
+     * prints each case's result followed by a delimiter line, and the output is
+     * split back into per-case outcomes here.
+     * Returns null when the output can't be attributed to individual cases (for
+     * example the process crashed or timed out half way through), so the caller
+     * falls back to judging each case on its own.
+     */
+    private List<TestCaseOutcome> judgeBatched(String sourceCode, String language,
+            List<TestCase> testCases, Harness harness, TestCaseListener listener) {
+        boolean java = "java".equalsIgnoreCase(language);
+        String main = java ? harness.javaBatchMain() : harness.cppBatchMain();
+        if (main == null) {
+            return null;
+        }
+        String script = (java ? JAVA_HARNESS_HEADER : CPP_HARNESS_HEADER) + sourceCode.trim() + "\n\n" + main;
+        executionTracer.payload("source", sourceCode);
+        executionTracer.payload("wrapped", script);
+
+        Map<String, Object> execResult = executeScript(script, language, null);
+        if (execResult.containsKey("error") || Boolean.TRUE.equals(execResult.get("timedOut"))) {
+            return null;
+        }
+
+        if (Boolean.TRUE.equals(execResult.get("compilationError"))) {
+            String compilationError = (String) execResult.get("stderr");
+            // An error in the generated harness (e.g. one case's input that doesn't
+            // fit the signature) must only fail that case, so judge them one by one
+            if (!compileErrorInSolution(compilationError, script, sourceCode.trim())) {
+                return null;
             }
+            List<TestCaseOutcome> outcomes = new ArrayList<>(testCases.size());
+            TestCase first = testCases.get(0);
+            outcomes.add(new TestCaseOutcome(new TestCaseResultDto(
+                    first.getInput(), first.getExpectedOutput(),
+                    "Compilation Error: " + compilationError, false),
+                    VERDICT_COMPILATION_ERROR, compilationError));
+            for (int i = 1; i < testCases.size(); i++) {
+                outcomes.add(compilationErrorPlaceholder(testCases.get(i)));
+            }
+            listener.onResult(0, outcomes.get(0).result());
+            return outcomes;
+        }
 
-            // Check for compilation error
-            if (Boolean.TRUE.equals(execResult.get("compilationError"))) {
-                compilationError = (String) execResult.get("stderr");
-                overallStatus = "COMPILATION_ERROR";
-                results.add(new TestCaseResultDto(
+        String[] segments = BATCH_SPLITTER.split((String) execResult.get("stdout"), -1);
+        if (segments.length != testCases.size() + 1) {
+            return null;
+        }
+
+        List<TestCaseOutcome> outcomes = new ArrayList<>(testCases.size());
+        for (int i = 0; i < testCases.size(); i++) {
+            TestCase tc = testCases.get(i);
+            String segment = segments[i].trim();
+            // The solution may have printed before it threw, so the marker needn't come first
+            int marker = segment.indexOf(BATCH_RUNTIME_ERROR_MARKER);
+            if (marker >= 0) {
+                outcomes.add(new TestCaseOutcome(new TestCaseResultDto(
                         tc.getInput(), tc.getExpectedOutput(),
-                        "Compilation Error: " + compilationError, false));
+                        "Runtime Error: " + segment.substring(marker + BATCH_RUNTIME_ERROR_MARKER.length()), false),
+                        "RUNTIME_ERROR", null));
+            } else {
+                outcomes.add(compareOutput(tc, segment));
+            }
+            listener.onResult(i, outcomes.get(i).result());
+        }
+        return outcomes;
+    }
+
+    /**
+     * Whether any compiler error line ("File.java:12: error", "file.cpp:12:5:
+     * error") points into the solution's lines of the generated program.
+     * Output without such a line is ambiguous and doesn't count, so the
+     * batch falls back to judging each case on its own.
+     */
+    static boolean compileErrorInSolution(String compilerOutput, String script, String solution) {
+        int start = script.indexOf(solution);
+        if (start < 0 || compilerOutput == null) {
+            return false;
+        }
+        int firstLine = lineOf(script, start);
+        int lastLine = lineOf(script, start + solution.length());
+        java.util.regex.Matcher matcher = COMPILE_ERROR_LINE.matcher(compilerOutput);
+        while (matcher.find()) {
+            int line = Integer.parseInt(matcher.group(1));
+            if (line >= firstLine && line <= lastLine) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int lineOf(String text, int offset) {
+        int line = 1;
+        for (int i = 0; i < offset; i++) {
+            if (text.charAt(i) == '\n') {
+                line++;
+            }
+        }
+        return line;
+    }
+
+    private List<TestCaseOutcome> judgeSequentially(String sourceCode, String language,
+            List<TestCase> testCases, Harness harness, TestCaseListener listener) {
+        List<TestCaseOutcome> outcomes = new ArrayList<>();
+        for (TestCase tc : testCases) {
+            TestCaseOutcome outcome = judgeTestCase(sourceCode, language, tc, harness, outcomes.size());
+            listener.onResult(outcomes.size(), outcome.result());
+            outcomes.add(outcome);
+            if (VERDICT_COMPILATION_ERROR.equals(outcome.verdict())) {
                 // All remaining tests will also fail to compile, so break
-                for (int i = results.size(); i < testCases.size(); i++) {
-                    TestCase remaining = testCases.get(i);
-                    results.add(new TestCaseResultDto(
-                            remaining.getInput(), remaining.getExpectedOutput(),
-                            "Compilation Error", false));
+                for (int i = outcomes.size(); i < testCases.size(); i++) {
+                    outcomes.add(compilationErrorPlaceholder(testCases.get(i)));
                 }
                 break;
             }
+        }
+        return outcomes;
+    }
 
-            // Check for timeout
-            if (Boolean.TRUE.equals(execResult.get("timedOut"))) {
-                overallStatus = "TIME_LIMIT_EXCEEDED";
-                results.add(new TestCaseResultDto(
-                        tc.getInput(), tc.getExpectedOutput(),
-                        "Time Limit Exceeded", false));
-                continue;
-            }
+    /**
+     * Fan every test case out on the judge executor. The first compilation
+     * error cancels the executions still in flight, since every other case
+     * would fail to compile in the same way.
+     */
+    private List<TestCaseOutcome> judgeConcurrently(String sourceCode, String language,
+            List<TestCase> testCases, Harness harness, TestCaseListener listener) {
+        TestCaseOutcome[] outcomes = new TestCaseOutcome[testCases.size()];
+        ExecutionTracer.Trace trace = executionTracer.current();
+        CompletionService<Integer> completion = new ExecutorCompletionService<>(testCaseExecutor);
+        List<Future<Integer>> futures = new ArrayList<>(testCases.size());
+
+        for (int i = 0; i < testCases.size(); i++) {
+            final int index = i;
+            final TestCase tc = testCases.get(i);
+            futures.add(completion.submit(() -> {
+                try (ExecutionTracer.Scope scope = trace != null ? trace.bind() : () -> {
+                }) {
+                    outcomes[index] = judgeTestCase(sourceCode, language, tc, harness, index);
+                }
+                return index;
+            }));
+        }
 
-            // Check for runtime error
-            String stderr = (String) execResult.get("stderr");
-            int exitCode = (int) execResult.get("exitCode");
-            if (exitCode != 0 && !stderr.isEmpty()) {
-                if (!"WRONG_ANSWER".equals(overallStatus)) {
-                    overallStatus = "RUNTIME_ERROR";
+        try {
+            for (int done = 0; done < testCases.size(); done++) {
+                int index = completion.take().get();
+                listener.onResult(index, outcomes[index].result());
+                if (VERDICT_COMPILATION_ERROR.equals(outcomes[index].verdict())) {
+                    futures.forEach(f -> f.cancel(true));
+                    List<TestCaseOutcome> failed = new ArrayList<>(testCases.size());
+                    for (int i = 0; i < testCases.size(); i++) {
+                        failed.add(i == index ? outcomes[index] : compilationErrorPlaceholder(testCases.get(i)));
+                    }
+                    return failed;
                 }
-                results.add(new TestCaseResultDto(
-                        tc.getInput(), tc.getExpectedOutput(),
-                        "Runtime Error: " + stderr, false));
-                continue;
             }
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while judging test cases", e);
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            throw new IllegalStateException("Test case execution failed: " + e.getCause().getMessage(), e.getCause());
+        }
+        return Arrays.asList(outcomes);
+    }
 
-            // Compare output
-            String actualOutput = ((String) execResult.get("stdout")).trim();
-            String expectedOutput = tc.getExpectedOutput().trim();
-            boolean isCorrect = normalizeOutput(actualOutput).equals(normalizeOutput(expectedOutput));
+    /**
+     * Run the code against the test case at index and classify the result.
+     */
+    private TestCaseOutcome judgeTestCase(String sourceCode, String language, TestCase tc, Harness harness,
+            int index) {
+        // For Java and C++ with a harness, wrap a Solution with the test case's main
+        Supplier<String> caseMain = null;
+        if (harness != null && "java".equalsIgnoreCase(language)) {
+            String prepared = harness.javaCaseMains().get(index);
+            caseMain = prepared != null ? () -> prepared
+                    : () -> javaCaseMain(harness.methodName(), harness.paramTypes(), tc.getInput());
+        } else if (harness != null && "cpp".equalsIgnoreCase(language)) {
+            String prepared = harness.cppCaseMains().get(index);
+            caseMain = prepared != null ? () -> prepared : () -> cppCaseMain(harness.methodName(), tc.getInput());
+        }
+        Map<String, Object> execResult = executeWrapped(sourceCode, language, tc.getInput(), caseMain);
+
+        // The backend itself failed; not the code's fault
+        if (execResult.containsKey("error")) {
+            return new TestCaseOutcome(new TestCaseResultDto(
+                    tc.getInput(), tc.getExpectedOutput(),
+                    "Judge Error: " + execResult.get("error"), false),
+                    VERDICT_INTERNAL_ERROR, null);
+        }
 
-            if (isCorrect) {
-                passed++;
-            } else {
-                overallStatus = "WRONG_ANSWER";
-            }
+        // Check for compilation error
+        if (Boolean.TRUE.equals(execResult.get("compilationError"))) {
+            String compilationError = (String) execResult.get("stderr");
+            return new TestCaseOutcome(new TestCaseResultDto(
+                    tc.getInput(), tc.getExpectedOutput(),
+                    "Compilation Error: " + compilationError, false),
+                    VERDICT_COMPILATION_ERROR, compilationError);
+        }
 
-            results.add(new TestCaseResultDto(
-                    tc.getInput(), tc.getExpectedOutput(), actualOutput, isCorrect));
+        // Check for timeout
+        if (Boolean.TRUE.equals(execResult.get("timedOut"))) {
+            return new TestCaseOutcome(new TestCaseResultDto(
+                    tc.getInput(), tc.getExpectedOutput(),
+                    "Time Limit Exceeded", false),
+                    "TIME_LIMIT_EXCEEDED", null);
         }
 
-        if (passed == testCases.size() && !testCases.isEmpty()) {
-            overallStatus = "ACCEPTED";
+        // Check for runtime error
+        String stderr = (String) execResult.get("stderr");
+        int exitCode = (int) execResult.get("exitCode");
+        if (exitCode != 0 && !stderr.isEmpty()) {
+            return new TestCaseOutcome(new TestCaseResultDto(
+                    tc.getInput(), tc.getExpectedOutput(),
+                    "Runtime Error: " + stderr, false),
+                    "RUNTIME_ERROR", null);
         }
 
-        return new CodeExecutionResultDto(overallStatus, results, compilationError, passed, testCases.size());
+        return compareOutput(tc, ((String) execResult.get("stdout")).trim());
+    }
+
+    private TestCaseOutcome compareOutput(TestCase tc, String actualOutput) {
+        String expectedOutput = tc.getExpectedOutput().trim();
+        boolean isCorrect = executionTracer.time(ExecutionTracer.Phase.COMPARE,
+                () -> "tokens".equalsIgnoreCase(compareMode)
+                        ? OutputComparator.matchesTokens(expectedOutput, actualOutput, floatTolerance)
+                        : OutputComparator.matches(expectedOutput, actualOutput));
+
+        return new TestCaseOutcome(new TestCaseResultDto(
+                tc.getInput(), tc.getExpectedOutput(), actualOutput, isCorrect),
+                isCorrect ? VERDICT_PASSED : "WRONG_ANSWER", null);
+    }
+
+    private TestCaseOutcome compilationErrorPlaceholder(TestCase tc) {
+        return new TestCaseOutcome(new TestCaseResultDto(
+                tc.getInput(), tc.getExpectedOutput(),
+                "Compilation Error", false),
+                VERDICT_COMPILATION_ERROR, null);
     }
 
     /**
-     * Normalize output for comparison: trim whitespace, normalize line endings,
-     * and strip spaces after commas/inside brackets so [1, 2, 3] == [1,2,3].
+     * Fold per-test-case outcomes (in test case order) into the overall verdict.
      */
-    private String normalizeOutput(String output) {
-        if (output == null)
-            return "";
-        return output
-                .replaceAll("\\r\\n", "\n") // normalize line endings
-                .replaceAll(",\\s+", ",") // "1, 2, 3" -> "1,2,3"
-                .replaceAll("\\[\\s+", "[") // "[ 1" -> "[1"
-                .replaceAll("\\s+\\]", "]") // "1 ]" -> "1]"
-                .replaceAll("\\s+$", "")
-                .trim();
+    private CodeExecutionResultDto summarize(List<TestCaseOutcome> outcomes, int totalTests) {
+        List<TestCaseResultDto> results = new ArrayList<>(outcomes.size());
+        int passed = 0;
+        String overallStatus = "ACCEPTED";
+        String compilationError = null;
+        boolean internalError = false;
+
+        for (TestCaseOutcome outcome : outcomes) {
+            results.add(outcome.result());
+            switch (outcome.verdict()) {
+                case VERDICT_PASSED -> passed++;
+                case VERDICT_COMPILATION_ERROR -> {
+                    overallStatus = VERDICT_COMPILATION_ERROR;
+                    if (outcome.compilationError() != null) {
+                        compilationError = outcome.compilationError();
+                    }
+                }
+                case "RUNTIME_ERROR" -> {
+                    if (!"WRONG_ANSWER".equals(overallStatus)) {
+                        overallStatus = "RUNTIME_ERROR";
+                    }
+                }
+                case VERDICT_INTERNAL_ERROR -> internalError = true;
+                default -> overallStatus = outcome.verdict();
+            }
+        }
+
+        // Unless the code didn't even compile, a case the backend failed to run
+        // leaves the submission unjudged
+        if (internalError && !VERDICT_COMPILATION_ERROR.equals(overallStatus)) {
+            overallStatus = VERDICT_INTERNAL_ERROR;
+        }
+
+        if (passed == totalTests && totalTests > 0) {
+            overallStatus = "ACCEPTED";
+        }
+
+        return new CodeExecutionResultDto(overallStatus, results, compilationError, passed, totalTests);
+    }
+
+    private record TestCaseOutcome(TestCaseResultDto result, String verdict, String compilationError) {
     }
 
     /**
@@ -269,22 +598,18 @@ public class CodeExecutionService {
      * - Input: "public class Solution { ... }"
      * Output: Unchanged (already has class)
      */
-    private String wrapJavaCodeIfNeeded(String code) {
-        return wrapJavaCodeIfNeeded(code, null, null);
-    }
-
-    private String wrapJavaCodeIfNeeded(String code, String methodName, String testInput) {
+    private String wrapJavaCodeIfNeeded(String code, Supplier<String> caseMain) {
         String trimmedCode = code.trim();
 
         // Check if code already has a class definition
-        if (trimmedCode.matches("(?s).*\\b(class|interface|enum)\\s+\\w+.*")) {
+        if (TYPE_DECLARATION.matcher(trimmedCode).find()) {
             // Code already has a class/interface/enum definition
             // Check if it has a main method
-            if (!trimmedCode.matches("(?s).*public\\s+static\\s+void\\s+main\\s*\\(.*")) {
+            if (!MAIN_METHOD.matcher(trimmedCode).find()) {
                 // Has class but no main method - generate smart wrapper
-                if (methodName != null && !methodName.isEmpty() && testInput != null) {
+                if (caseMain != null) {
                     // Smart wrapping: instantiate Solution and call the method
-                    return generateSmartWrapper(trimmedCode, methodName, testInput);
+                    return JAVA_HARNESS_HEADER + trimmedCode + "\n\n" + caseMain.get();
                 } else {
                     // Fallback: basic wrapping (old behavior)
                     return "public class Main {\n" +
@@ -299,7 +624,7 @@ public class CodeExecutionService {
         }
 
         // Check if code has main method but no class wrapper
-        if (trimmedCode.matches("(?s).*public\\s+static\\s+void\\s+main\\s*\\(.*")) {
+        if (MAIN_METHOD.matcher(trimmedCode).find()) {
             // Has main method but no class - wrap in Main class
             return "public class Main {\n" +
                     "    " + trimmedCode + "\n" +
@@ -318,7 +643,7 @@ public class CodeExecutionService {
      * Wrap C++ Solution class with a main() function if it doesn't have one.
      * Always prepends standard headers so 'string', 'vector' etc. are available.
      */
-    private String wrapCppCodeIfNeeded(String code, String methodName, String testInput) {
+    private String wrapCppCodeIfNeeded(String code, Supplier<String> caseMain) {
         String trimmed = code.trim();
 
         // Always prepend standard headers if not already present
@@ -332,14 +657,68 @@ public class CodeExecutionService {
             return headers + trimmed;
         }
 
-        return generateCppWrapper(trimmed, methodName, testInput);
+        return CPP_HARNESS_HEADER + trimmed + "\n\n" + caseMain.get();
     }
 
     /**
      * Generate a C++ main() that instantiates Solution, feeds test input, and
      * prints result.
      */
-    private String generateCppWrapper(String solutionCode, String methodName, String testInput) {
+    private String cppCaseMain(String methodName, String testInput) {
+        String[] args = buildCppArguments(testInput);
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("int main() {\n");
+        sb.append("    Solution sol;\n");
+        for (String decl : args[0].split("\n")) {
+            sb.append("    ").append(decl).append("\n");
+        }
+        sb.append("    auto result = sol.").append(methodName).append("(").append(args[1]).append(");\n");
+        // Print result — for vectors use a loop, for primitives use cout
+        sb.append("    cout << result << endl;\n");
+        sb.append("    return 0;\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    /**
+     * Generate a C++ main() that runs every test case in turn, printing each
+     * result followed by the batch delimiter line.
+     */
+    private String cppBatchMain(String methodName, List<String> inputs) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < inputs.size(); i++) {
+            String[] args = buildCppArguments(inputs.get(i));
+            sb.append("void runCase").append(i).append("() {\n");
+            sb.append("    Solution sol;\n");
+            for (String decl : args[0].split("\n")) {
+                sb.append("    ").append(decl).append("\n");
+            }
+            sb.append("    auto result = sol.").append(methodName).append("(").append(args[1]).append(");\n");
+            sb.append("    cout << result;\n");
+            sb.append("}\n\n");
+        }
+        sb.append("int main() {\n");
+        for (int i = 0; i < inputs.size(); i++) {
+            sb.append("    try {\n");
+            sb.append("        runCase").append(i).append("();\n");
+            sb.append("    } catch (const exception& e) {\n");
+            sb.append("        cout << \"").append(BATCH_RUNTIME_ERROR_MARKER).append("\" << e.what();\n");
+            sb.append("    } catch (...) {\n");
+            sb.append("        cout << \"").append(BATCH_RUNTIME_ERROR_MARKER).append("unknown exception\";\n");
+            sb.append("    }\n");
+            sb.append("    cout << \"\\n").append(BATCH_CASE_DELIMITER).append("\\n\" << flush;\n");
+        }
+        sb.append("    return 0;\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    /**
+     * Convert the Java-style declarations from parseTestInputMulti into C++.
+     * Returns String[2]: [0] = declarations, [1] = argument list.
+     */
+    private String[] buildCppArguments(String testInput) {
         String[] parsed = parseTestInputMulti(testInput);
         String declarations = parsed[0];
         String argList = parsed[1];
@@ -358,42 +737,106 @@ public class CodeExecutionService {
                 "vector<int> $1 = {$2};");
         // Remove semicolons on blank/comment lines
         cppDecls = cppDecls.replace("String ", "string ");
-
-        StringBuilder sb = new StringBuilder();
-        sb.append("#include <bits/stdc++.h>\n");
-        sb.append("using namespace std;\n\n");
-        sb.append(solutionCode).append("\n\n");
-        sb.append("int main() {\n");
-        sb.append("    Solution sol;\n");
-        for (String decl : cppDecls.split("\n")) {
-            sb.append("    ").append(decl).append("\n");
-        }
-        sb.append("    auto result = sol.").append(methodName).append("(").append(argList).append(");\n");
-        // Print result — for vectors use a loop, for primitives use cout
-        sb.append("    cout << result << endl;\n");
-        sb.append("    return 0;\n");
-        sb.append("}\n");
-        return sb.toString();
+        return new String[] { cppDecls, argList };
     }
 
     /**
      * Generate smart wrapper for LeetCode-style Solution classes.
      * Creates a Main class that instantiates Solution and calls the method with
-     * test input.
+     * test input, declaring the arguments with the method's parameter types.
      * Supports multi-parameter methods by splitting multi-line test inputs.
      */
-    private String generateSmartWrapper(String solutionCode, String methodName, String testInput) {
+    private String javaCaseMain(String methodName, List<String> paramTypes, String testInput) {
         String className = "Solution";
+        String[] args = buildJavaArguments(paramTypes, testInput);
 
+        StringBuilder wrapper = new StringBuilder();
+        wrapper.append("public class Main {\n");
+        appendPrintResult(wrapper);
+        wrapper.append("    public static void main(String[] args) {\n");
+        wrapper.append("        ").append(className).append(" sol = new ").append(className).append("();\n");
+        wrapper.append("        \n");
+        wrapper.append("        // Test case input\n");
+        if (!args[0].isEmpty()) {
+            for (String decl : args[0].split("\n")) {
+                wrapper.append("        ").append(decl).append("\n");
+            }
+        }
+        wrapper.append("        \n");
+        wrapper.append("        Object result = sol.").append(methodName).append("(").append(args[1]).append(");\n");
+        wrapper.append("        printResult(result);\n");
+        wrapper.append("    }\n");
+        wrapper.append("}\n");
+
+        return wrapper.toString();
+    }
+
+    /**
+     * Generate a Main class that runs the Solution method once per test case.
+     * Each case lives in its own static method so argument names don't clash,
+     * and a throwing case is reported with a marker instead of aborting the
+     * remaining cases.
+     */
+    private String javaBatchMain(String methodName, List<String> paramTypes, List<String> inputs) {
+        StringBuilder wrapper = new StringBuilder();
+        wrapper.append("public class Main {\n");
+        appendPrintResult(wrapper);
+        for (int i = 0; i < inputs.size(); i++) {
+            String[] args = buildJavaArguments(paramTypes, inputs.get(i));
+            wrapper.append("    static Object runCase").append(i).append("() {\n");
+            wrapper.append("        Solution sol = new Solution();\n");
+            if (!args[0].isEmpty()) {
+                for (String decl : args[0].split("\n")) {
+                    wrapper.append("        ").append(decl).append("\n");
+                }
+            }
+            wrapper.append("        return sol.").append(methodName).append("(").append(args[1]).append(");\n");
+            wrapper.append("    }\n");
+        }
+        wrapper.append("    public static void main(String[] args) {\n");
+        for (int i = 0; i < inputs.size(); i++) {
+            wrapper.append("        try {\n");
+            wrapper.append("            printResult(runCase").append(i).append("());\n");
+            wrapper.append("        } catch (Throwable t) {\n");
+            wrapper.append("            System.out.print(\"").append(BATCH_RUNTIME_ERROR_MARKER).append("\" + t);\n");
+            wrapper.append("        }\n");
+            wrapper.append("        System.out.println();\n");
+            wrapper.append("        System.out.println(\"").append(BATCH_CASE_DELIMITER).append("\");\n");
+        }
+        wrapper.append("        System.out.flush();\n");
+        wrapper.append("    }\n");
+        wrapper.append("}\n");
+
+        return wrapper.toString();
+    }
+
+    // Helper: prints 1D/2D arrays and Lists properly
+    private void appendPrintResult(StringBuilder wrapper) {
+        wrapper.append("    static void printResult(Object r) {\n");
+        wrapper.append("        if (r instanceof int[][]) {\n");
+        wrapper.append("            System.out.print(Arrays.deepToString((int[][]) r));\n");
+        wrapper.append("        } else if (r instanceof int[]) {\n");
+        wrapper.append("            System.out.print(Arrays.toString((int[]) r));\n");
+        wrapper.append("        } else if (r instanceof String[]) {\n");
+        wrapper.append("            System.out.print(Arrays.toString((String[]) r));\n");
+        wrapper.append("        } else {\n");
+        wrapper.append("            System.out.print(r);\n");
+        wrapper.append("        }\n");
+        wrapper.append("    }\n");
+    }
+
+    /**
+     * Build typed Java declarations for one test input.
+     * Returns String[2]: [0] = newline-separated declarations, [1] = argument list.
+     * Supports multi-parameter methods by splitting multi-line test inputs.
+     */
+    private String[] buildJavaArguments(List<String> paramTypes, String testInput) {
         // Normalize single-line multi-param input to multi-line, then split
         String normalizedInput = splitMultiParamInput(testInput);
         String[] inputLines = (normalizedInput == null || normalizedInput.trim().isEmpty())
                 ? new String[0]
                 : normalizedInput.trim().split("\\r?\\n");
 
-        // Extract actual parameter types from the solution method signature
-        List<String> paramTypes = extractParamTypes(solutionCode, methodName);
-
         // Build declarations and argument list using real types
         StringBuilder decls = new StringBuilder();
         StringBuilder argList = new StringBuilder();
@@ -409,40 +852,7 @@ public class CodeExecutionService {
             decls.append(decl);
             argList.append(argName);
         }
-
-        StringBuilder wrapper = new StringBuilder();
-        wrapper.append("import java.util.*;\n");
-        wrapper.append("import java.util.Arrays;\n\n");
-        wrapper.append(solutionCode).append("\n\n");
-        wrapper.append("public class Main {\n");
-        // Helper: prints 1D/2D arrays and Lists properly
-        wrapper.append("    static void printResult(Object r) {\n");
-        wrapper.append("        if (r instanceof int[][]) {\n");
-        wrapper.append("            System.out.print(Arrays.deepToString((int[][]) r));\n");
-        wrapper.append("        } else if (r instanceof int[]) {\n");
-        wrapper.append("            System.out.print(Arrays.toString((int[]) r));\n");
-        wrapper.append("        } else if (r instanceof String[]) {\n");
-        wrapper.append("            System.out.print(Arrays.toString((String[]) r));\n");
-        wrapper.append("        } else {\n");
-        wrapper.append("            System.out.print(r);\n");
-        wrapper.append("        }\n");
-        wrapper.append("    }\n");
-        wrapper.append("    public static void main(String[] args) {\n");
-        wrapper.append("        ").append(className).append(" sol = new ").append(className).append("();\n");
-        wrapper.append("        \n");
-        wrapper.append("        // Test case input\n");
-        if (decls.length() > 0) {
-            for (String decl : decls.toString().split("\n")) {
-                wrapper.append("        ").append(decl).append("\n");
-            }
-        }
-        wrapper.append("        \n");
-        wrapper.append("        Object result = sol.").append(methodName).append("(").append(argList).append(");\n");
-        wrapper.append("        printResult(result);\n");
-        wrapper.append("    }\n");
-        wrapper.append("}\n");
-
-        return wrapper.toString();
+        return new String[] { decls.toString(), argList.toString() };
     }
 
     /**
@@ -451,7 +861,7 @@ public class CodeExecutionService {
      * Handles generics like List<Integer>, Map<Integer,Integer> correctly.
      * Returns empty list if the method signature can't be found.
      */
-    private List<String> extractParamTypes(String solutionCode, String methodName) {
+    private List<String> parseParamTypes(String solutionCode, String methodName) {
         List<String> types = new ArrayList<>();
         // Match: <anything> methodName(<params>)
         java.util.regex.Pattern p = java.util.regex.Pattern.compile(
@@ -495,7 +905,15 @@ public class CodeExecutionService {
                 types.add(parts[0].trim()); // fallback
             }
         }
-        return types;
+        return List.copyOf(types);
+    }
+
+    private static List<String> inputsOf(List<TestCase> testCases) {
+        List<String> inputs = new ArrayList<>(testCases.size());
+        for (TestCase tc : testCases) {
+            inputs.add(tc.getInput());
+        }
+        return inputs;
     }
 
     /**
@@ -843,8 +1261,9 @@ public class CodeExecutionService {
                 else if (ch == ']' || ch == ')') depth--;
                 else if (ch == ',' && depth == 0) {
                     // Look ahead: skip whitespace and check for "word = "
-                    String rest = input.substring(i + 1).stripLeading();
-                    if (rest.matches("(?s)\\w+\\s*=\\s*.*")) {
+                    int next = i + 1;
+                    while (next < input.length() && Character.isWhitespace(input.charAt(next))) next++;
+                    if (PARAM_ASSIGNMENT.matcher(input).region(next, input.length()).lookingAt()) {
                         // This comma separates two parameters — replace with newline
                         result.append("\n");
                         // Skip the comma and trailing spaces
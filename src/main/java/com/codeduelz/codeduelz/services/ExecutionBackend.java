@@ -0,0 +1,24 @@
+package com.codeduelz.codeduelz.services;
+
+import java.util.Map;
+
+/**
+ * Runs a complete, already-wrapped program and reports what it printed.
+ * Implementations are selected with the judge.backend property.
+ */
+public interface ExecutionBackend {
+    /**
+     * Returns a map with keys: stdout, stderr, exitCode, timedOut,
+     * compilationError (or error, stdout, stderr, exitCode when the backend
+     * itself failed).
+     */
+    Map<String, Object> execute(String sourceCode, String language, String stdin);
+
+    /**
+     * How many executions the backend can run at once; callers keep no more
+     * than this in flight.
+     */
+    default int maxConcurrency() {
+        return Integer.MAX_VALUE;
+    }
+}
@@ -0,0 +1,221 @@
+package com.codeduelz.codeduelz.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Execution tracing for the judge. Each evaluation gets a trace ID (also put
+ * in the logging MDC as "traceId") and a one-line summary with the time spent
+ * in each phase. Phase timings are aggregated for the judge metrics endpoint.
+ *
+ * Source code, generated programs and backend request/response bodies are
+ * only logged for a sampled fraction of traces, only at DEBUG, truncated, and
+ * with credentials redacted.
+ */
+@Service
+@Slf4j
+public class ExecutionTracer {
+
+    public enum Phase {
+        WRAP, QUEUE, REMOTE, COMPARE
+    }
+
+    private static final String MDC_KEY = "traceId";
+
+    // JSON string fields whose values must never be logged
+    private static final Pattern SECRET_FIELD = Pattern.compile(
+            "(\"(?:clientSecret|clientId|apiKey|password|token)\"\\s*:\\s*\")(?:[^\"\\\\]|\\\\.)*(\")");
+
+    @Value("${judge.trace.sample-rate:0.01}")
+    private double sampleRate;
+
+    @Value("${judge.trace.max-payload-chars:4000}")
+    private int maxPayloadChars;
+
+    private static final ThreadLocal<Trace> CURRENT = new ThreadLocal<>();
+
+    private final Map<Phase, PhaseStats> stats = new EnumMap<>(Phase.class);
+    private final LongAdder traces = new LongAdder();
+    private final LongAdder sampledTraces = new LongAdder();
+
+    public ExecutionTracer() {
+        for (Phase phase : Phase.values()) {
+            stats.put(phase, new PhaseStats());
+        }
+    }
+
+    /**
+     * Start a trace for one evaluation. Bind it to each thread that works on
+     * the evaluation so phase timings and payloads are attributed to it.
+     */
+    public Trace start(String language, int testCases) {
+        traces.increment();
+        boolean sampled = log.isDebugEnabled() && ThreadLocalRandom.current().nextDouble() < sampleRate;
+        if (sampled) {
+            sampledTraces.increment();
+        }
+        return new Trace(Long.toHexString(ThreadLocalRandom.current().nextLong()), language, testCases, sampled);
+    }
+
+    /**
+     * The trace bound to the calling thread, or null.
+     */
+    public Trace current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Run work and record its duration under phase.
+     */
+    public <T> T time(Phase phase, Supplier<T> work) {
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            record(phase, System.nanoTime() - start);
+        }
+    }
+
+    public void record(Phase phase, long nanos) {
+        stats.get(phase).add(nanos);
+        Trace trace = CURRENT.get();
+        if (trace != null) {
+            trace.phaseNanos.addAndGet(phase.ordinal(), nanos);
+        }
+    }
+
+    /**
+     * Log a payload for the current trace if it was sampled.
+     */
+    public void payload(String label, String value) {
+        Trace trace = CURRENT.get();
+        if (trace == null || !trace.sampled || value == null) {
+            return;
+        }
+        // Redact before truncating: a secret cut off mid-value would no longer match
+        String captured = redact(value);
+        if (captured.length() > maxPayloadChars) {
+            captured = captured.substring(0, maxPayloadChars) + "...[truncated]";
+        }
+        log.debug("trace={} {} ({} chars):\n{}", trace.id, label, value.length(), captured);
+    }
+
+    public static String redact(String text) {
+        return text == null ? null : SECRET_FIELD.matcher(text).replaceAll("$1***$2");
+    }
+
+    /**
+     * Per-phase counts and timings, for the judge metrics endpoint.
+     */
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("traces", traces.sum());
+        metrics.put("sampledTraces", sampledTraces.sum());
+        for (Phase phase : Phase.values()) {
+            metrics.put(phase.name().toLowerCase(), stats.get(phase).snapshot());
+        }
+        return metrics;
+    }
+
+    public final class Trace {
+        private final String id;
+        private final String language;
+        private final int testCases;
+        private final boolean sampled;
+        private final long startNanos = System.nanoTime();
+        private final AtomicLongArray phaseNanos = new AtomicLongArray(Phase.values().length);
+
+        private Trace(String id, String language, int testCases, boolean sampled) {
+            this.id = id;
+            this.language = language;
+            this.testCases = testCases;
+            this.sampled = sampled;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * Make this the calling thread's trace until the returned scope is closed.
+         */
+        public Scope bind() {
+            Trace previous = CURRENT.get();
+            String previousId = MDC.get(MDC_KEY);
+            CURRENT.set(this);
+            MDC.put(MDC_KEY, id);
+            return () -> {
+                if (previous == null) {
+                    CURRENT.remove();
+                } else {
+                    CURRENT.set(previous);
+                }
+                if (previousId == null) {
+                    MDC.remove(MDC_KEY);
+                } else {
+                    MDC.put(MDC_KEY, previousId);
+                }
+            };
+        }
+
+        /**
+         * Log the one-line summary for this trace. Phase times are summed over
+         * all test cases, so with parallel judging they can exceed the total.
+         */
+        public void finish(String status) {
+            log.info("judge trace={} language={} tests={} status={} wrapMs={} queueMs={} remoteMs={} compareMs={} totalMs={}",
+                    id, language, testCases, status,
+                    millis(phaseNanos.get(Phase.WRAP.ordinal())),
+                    millis(phaseNanos.get(Phase.QUEUE.ordinal())),
+                    millis(phaseNanos.get(Phase.REMOTE.ordinal())),
+                    millis(phaseNanos.get(Phase.COMPARE.ordinal())),
+                    millis(System.nanoTime() - startNanos));
+        }
+    }
+
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private static final class PhaseStats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+
+        void add(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        Map<String, Object> snapshot() {
+            long n = count.sum();
+            long total = totalNanos.sum();
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("count", n);
+            snapshot.put("totalMs", millis(total));
+            snapshot.put("avgMs", n == 0 ? 0 : millis(total / n));
+            snapshot.put("maxMs", millis(maxNanos.get()));
+            return snapshot;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.codeduelz.codeduelz.services;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Dedicated pool for judging Run and Submit requests, so blocking judge work
+ * never lands on the common ForkJoinPool.
+ *
+ * The queue is bounded and prioritized: submissions are always dequeued before
+ * runs, and runs may only fill part of the queue so a burst of Run clicks
+ * can't lock out submissions. Each user may only have a few requests queued or
+ * running at once. Requests over either limit are rejected immediately and
+ * the caller is expected to tell the user to retry.
+ */
+@Service
+@Slf4j
+public class JudgeScheduler {
+
+    // Declaration order is priority order
+    public enum Priority {
+        SUBMIT, RUN
+    }
+
+    @Value("${judge.scheduler.workers:8}")
+    private int workers;
+
+    @Value("${judge.scheduler.queue-capacity:200}")
+    private int queueCapacity;
+
+    @Value("${judge.scheduler.per-user-limit:2}")
+    private int perUserLimit;
+
+    private ThreadPoolExecutor executor;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Map<String, Integer> perUser = new ConcurrentHashMap<>();
+
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong totalWaitMs = new AtomicLong();
+    private final LongAccumulator maxWaitMs = new LongAccumulator(Long::max, 0);
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "judge-" + threadIndex.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        // Start every worker up front so all tasks pass through the priority queue
+        executor.prestartAllCoreThreads();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Queue judge work for a user.
+     * Returns false, without running anything, when the queue is full or the
+     * user already has too many requests pending.
+     */
+    public boolean trySchedule(String username, Priority priority, Runnable work) {
+        if (!acquireUserSlot(username)) {
+            rejected.incrementAndGet();
+            return false;
+        }
+
+        // Runs are held to three quarters of the queue to leave room for submissions
+        int limit = priority == Priority.SUBMIT ? queueCapacity : queueCapacity * 3 / 4;
+        if (queued.incrementAndGet() > limit) {
+            queued.decrementAndGet();
+            releaseUserSlot(username);
+            rejected.incrementAndGet();
+            return false;
+        }
+
+        executor.execute(new JudgeTask(username, priority, sequence.incrementAndGet(), work));
+        return true;
+    }
+
+    /**
+     * Snapshot of queue depth and wait times, for the judge metrics endpoint.
+     */
+    public Map<String, Object> metrics() {
+        long done = completed.get();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("queueDepth", queued.get());
+        metrics.put("queueCapacity", queueCapacity);
+        metrics.put("running", executor.getActiveCount());
+        metrics.put("workers", workers);
+        metrics.put("completed", done);
+        metrics.put("rejected", rejected.get());
+        metrics.put("avgWaitMs", done == 0 ? 0 : totalWaitMs.get() / done);
+        metrics.put("maxWaitMs", maxWaitMs.get());
+        return metrics;
+    }
+
+    private boolean acquireUserSlot(String username) {
+        boolean[] admitted = { false };
+        perUser.compute(username, (k, count) -> {
+            int current = count == null ? 0 : count;
+            if (current >= perUserLimit) {
+                return count;
+            }
+            admitted[0] = true;
+            return current + 1;
+        });
+        return admitted[0];
+    }
+
+    private void releaseUserSlot(String username) {
+        perUser.computeIfPresent(username, (k, count) -> count <= 1 ? null : count - 1);
+    }
+
+    private final class JudgeTask implements Runnable, Comparable<JudgeTask> {
+        private final String username;
+        private final Priority priority;
+        private final long seq;
+        private final long enqueuedAtMs = System.currentTimeMillis();
+        private final Runnable work;
+
+        private JudgeTask(String username, Priority priority, long seq, Runnable work) {
+            this.username = username;
+            this.priority = priority;
+            this.seq = seq;
+            this.work = work;
+        }
+
+        @Override
+        public void run() {
+            queued.decrementAndGet();
+            long waitMs = System.currentTimeMillis() - enqueuedAtMs;
+            totalWaitMs.addAndGet(waitMs);
+            maxWaitMs.accumulate(waitMs);
+            try {
+                work.run();
+            } catch (Exception e) {
+                log.error("Judge task for {} failed: {}", username, e.getMessage(), e);
+            } finally {
+                completed.incrementAndGet();
+                releaseUserSlot(username);
+            }
+        }
+
+        @Override
+        public int compareTo(JudgeTask other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(seq, other.seq);
+        }
+    }
+}
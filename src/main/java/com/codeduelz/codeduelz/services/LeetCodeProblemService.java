@@ -3,17 +3,26 @@ package com.codeduelz.codeduelz.services;
 import com.codeduelz.codeduelz.entities.Difficulty;
 import com.codeduelz.codeduelz.entities.Problem;
 import com.codeduelz.codeduelz.entities.TestCase;
+import com.codeduelz.codeduelz.entities.User;
 import com.codeduelz.codeduelz.repo.ProblemRepo;
 import com.codeduelz.codeduelz.repo.TestCaseRepo;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.*;
 
 @Service
@@ -21,96 +30,269 @@ import java.util.regex.*;
 public class LeetCodeProblemService {
     private final ProblemRepo problemRepo;
     private final TestCaseRepo testCaseRepo;
+    private final ProblemSnapshotCache problemSnapshotCache;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
-    // In-memory index: difficulty -> list of parsed JSON nodes
-    private final Map<Difficulty, List<JsonNode>> problemsByDifficulty = new EnumMap<>(Difficulty.class);
-    private final Random random = new Random();
+    private static final Pattern METHOD_SIGNATURE =
+            Pattern.compile("public\\s+\\w+(?:<[^>]+>)?(?:\\[\\])?\\s+(\\w+)\\s*\\([^)]*\\)");
+
+    private final ProblemSelector problemSelector;
+    // Problems whose example test cases are known to be saved
+    private final Set<Long> seededProblems = ConcurrentHashMap.newKeySet();
+
+    // Binary copy of merged_problems.json, rebuilt whenever the JSON is newer;
+    // kept in memory instead if it can't be written there
+    @Value("${problems.catalog.path:${java.io.tmpdir}/codeduelz/merged_problems.catalog}")
+    private String catalogPath;
+
+    // Load the catalog on a background thread so startup doesn't wait for it;
+    // match creation blocks until it is ready
+    @Value("${problems.catalog.background-load:false}")
+    private boolean backgroundLoad;
+
+    // Memory-mapped problem set, completed with null if it can't be loaded;
+    // questions are parsed only when picked
+    private final CompletableFuture<ProblemCatalog> catalog = new CompletableFuture<>();
+    // difficulty ordinal -> difficulty to pick from, the largest one standing in for empty ones
+    private volatile Difficulty[] pickFrom;
+    private volatile boolean catalogBuilt;
+    private volatile long catalogLoadMs;
+
+    /**
+     * A problem picked for a match, with the JSON it was loaded from.
+     */
+    public record ProblemChoice(Problem problem, JsonNode source) {
+    }
 
     @PostConstruct
     public void init() {
-        for (Difficulty d : Difficulty.values()) {
-            problemsByDifficulty.put(d, new ArrayList<>());
+        if (!backgroundLoad) {
+            loadCatalog();
+            return;
         }
+        Thread loader = new Thread(this::loadCatalog, "problem-catalog-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
 
+    private void loadCatalog() {
+        long started = System.currentTimeMillis();
         File mergedFile = new File("merged_problems.json");
-        if (!mergedFile.exists()) {
-            System.err.println("WARNING: merged_problems.json not found at: " + mergedFile.getAbsolutePath());
-            return;
+        Path catalogFile = Path.of(catalogPath);
+        ProblemCatalog opened = null;
+        try {
+            if (!mergedFile.exists()) {
+                if (!Files.exists(catalogFile)) {
+                    System.err.println("WARNING: merged_problems.json not found at: " + mergedFile.getAbsolutePath());
+                    return;
+                }
+                opened = ProblemCatalog.open(catalogFile, objectMapper);
+            } else if (!Files.exists(catalogFile)
+                    || mergedFile.lastModified() > Files.getLastModifiedTime(catalogFile).toMillis()) {
+                opened = buildCatalog(mergedFile, catalogFile);
+            } else {
+                try {
+                    opened = ProblemCatalog.open(catalogFile, objectMapper);
+                } catch (IOException e) {
+                    // Written by an older version or cut short; start over from the JSON
+                    opened = buildCatalog(mergedFile, catalogFile);
+                }
+            }
+            pickFrom = pickFrom(opened);
+            catalogLoadMs = System.currentTimeMillis() - started;
+
+            System.out.println("LeetCodeProblemService: Indexed " + opened.size() + " problems from "
+                    + (opened.inMemory() ? mergedFile + " into memory" : catalogFile) + " in " + catalogLoadMs + " ms (" + opened.retainedBytes() + " bytes retained, "
+                    + opened.mappedBytes() + " bytes mapped)");
+            for (Difficulty d : Difficulty.values()) {
+                System.out.println("  " + d + ": " + opened.size(d) + " problems");
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to load merged_problems.json: " + e.getMessage());
+        } finally {
+            catalog.complete(opened);
         }
+    }
 
+    private static Difficulty[] pickFrom(ProblemCatalog catalog) {
+        Difficulty largest = Difficulty.MEDIUM;
+        for (Difficulty d : Difficulty.values()) {
+            if (catalog.size(d) > catalog.size(largest)) {
+                largest = d;
+            }
+        }
+        Difficulty[] pickFrom = new Difficulty[Difficulty.values().length];
+        for (Difficulty d : Difficulty.values()) {
+            pickFrom[d.ordinal()] = catalog.size(d) > 0 ? d : largest;
+        }
+        return pickFrom;
+    }
+
+    // Build the catalog file from the JSON and map it. If the file can't be
+    // written, e.g. on a read-only disk, build the catalog in memory instead.
+    private ProblemCatalog buildCatalog(File mergedFile, Path catalogFile) throws IOException {
         try {
-            JsonNode root = objectMapper.readTree(mergedFile);
-            JsonNode questions = root.get("questions");
-            if (questions == null || !questions.isArray()) {
-                System.err.println("WARNING: merged_problems.json does not contain a 'questions' array");
-                return;
+            Path directory = catalogFile.toAbsolutePath().getParent();
+            if (directory != null) {
+                Files.createDirectories(directory);
+            }
+            try (ProblemCatalog.Builder builder = new ProblemCatalog.Builder(catalogFile, objectMapper,
+                    this::difficultyOf)) {
+                addQuestions(mergedFile, builder);
             }
+            return ProblemCatalog.open(catalogFile, objectMapper);
+        } catch (IOException e) {
+            System.err.println("WARNING: Could not write problem catalog to " + catalogFile.toAbsolutePath() + " ("
+                    + e.getMessage() + "); keeping it in memory");
+            try (ProblemCatalog.Builder builder = new ProblemCatalog.Builder(objectMapper, this::difficultyOf)) {
+                addQuestions(mergedFile, builder);
+                return builder.catalog();
+            }
+        }
+    }
 
-            int loaded = 0;
-            for (JsonNode question : questions) {
-                String diffStr = question.has("difficulty") ? question.get("difficulty").asText() : "";
-                Difficulty difficulty = mapDifficulty(diffStr);
-                problemsByDifficulty.get(difficulty).add(question);
-                loaded++;
+    // Stream the questions array one question at a time, so only a single
+    // question's tree is ever in memory while building
+    private void addQuestions(File mergedFile, ProblemCatalog.Builder builder) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(mergedFile)) {
+            if (!seekQuestions(parser)) {
+                throw new IOException("merged_problems.json does not contain a 'questions' array");
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                builder.add(parser.readValueAsTree());
+            }
+            if (parser.currentToken() != JsonToken.END_ARRAY) {
+                throw new IOException("Unexpected " + parser.currentToken() + " in 'questions' array");
             }
+            builder.finish();
+        }
+        catalogBuilt = true;
+    }
 
-            System.out.println("LeetCodeProblemService: Indexed " + loaded + " problems from merged_problems.json");
-            for (Difficulty d : Difficulty.values()) {
-                System.out.println("  " + d + ": " + problemsByDifficulty.get(d).size() + " problems");
+    private Difficulty difficultyOf(JsonNode question) {
+        return mapDifficulty(question.has("difficulty") ? question.get("difficulty").asText() : "");
+    }
+
+    // Move the parser onto the start of the top-level "questions" array
+    private static boolean seekQuestions(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return false;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("questions".equals(field) && value == JsonToken.START_ARRAY) {
+                return true;
             }
-        } catch (IOException e) {
-            System.err.println("Failed to load merged_problems.json: " + e.getMessage());
+            parser.skipChildren();
         }
+        return false;
     }
 
     /**
-     * Get a random LeetCode problem for the given difficulty.
-     * Returns the Problem entity (saved to DB) and the raw JSON data
-     * packaged together as a Map for the WebSocket payload.
+     * Load time and footprint of the problem catalog, for the metrics endpoint.
      */
-    public Map<String, Object> getRandomProblemData(Difficulty difficulty) {
-        List<JsonNode> problems = problemsByDifficulty.get(difficulty);
-        if (problems.isEmpty()) {
-            problems = problemsByDifficulty.values().stream()
-                    .flatMap(List::stream)
-                    .toList();
-        }
-        if (problems.isEmpty()) {
+    public Map<String, Object> metrics() {
+        ProblemCatalog loaded = catalog.getNow(null);
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("loaded", catalog.isDone());
+        metrics.put("rebuilt", catalogBuilt);
+        metrics.put("loadMs", catalogLoadMs);
+        metrics.put("problems", loaded == null ? 0 : loaded.size());
+        metrics.put("retainedBytes", loaded == null ? 0 : loaded.retainedBytes());
+        metrics.put("mappedBytes", loaded == null ? 0 : loaded.mappedBytes());
+        metrics.put("inMemory", loaded != null && loaded.inMemory());
+        return metrics;
+    }
+
+    /**
+     * Get a random LeetCode problem for the given difficulty that neither
+     * player has played before, while there are any left.
+     * Returns the Problem entity (saved to DB, with its test cases) and the
+     * raw JSON; use problemDetails() to build the WebSocket payload parts.
+     */
+    public ProblemChoice getRandomProblem(Difficulty difficulty, User player1, User player2) {
+        ProblemCatalog problems = catalog();
+        if (problems == null || problems.size() == 0) {
             throw new RuntimeException("No LeetCode problems available");
         }
 
-        JsonNode node = problems.get(random.nextInt(problems.size()));
-        return loadProblemData(node);
+        Difficulty pool = pickFrom[difficulty.ordinal()];
+        int position = problemSelector.pick(problems, pool, player1.getUserId(), player2.getUserId());
+        JsonNode node = problems.question(pool, position);
+        return new ProblemChoice(loadProblem(node), node);
     }
 
-    private Map<String, Object> loadProblemData(JsonNode root) {
+    private Problem loadProblem(JsonNode root) {
         String leetcodeId = root.has("problem_id") ? root.get("problem_id").asText() : "";
 
         // Load or create the Problem entity
         Problem problem = problemRepo.findByLeetcodeId(leetcodeId).orElse(null);
         if (problem == null) {
-            problem = new Problem();
-            problem.setLeetcodeId(leetcodeId);
-            problem.setTitle(root.has("title") ? root.get("title").asText() : "Unknown");
-            problem.setProblemSlug(root.has("problem_slug") ? root.get("problem_slug").asText() : "");
-            problem.setDifficulty(mapDifficulty(root.has("difficulty") ? root.get("difficulty").asText() : "Medium"));
-            problem.setSource("LEETCODE");
-            problem.setDescription(cleanDescription(root.has("description") ? root.get("description").asText() : ""));
-
-            // Extract method name from Java code snippet
-            String methodName = extractMethodName(root);
-            problem.setMethodName(methodName);
-
-            problem = problemRepo.save(problem);
-        } else if (problem.getMethodName() == null || problem.getMethodName().isEmpty()) {
-            // Update existing problems that don't have methodName set
-            String methodName = extractMethodName(root);
-            problem.setMethodName(methodName);
-            problem = problemRepo.save(problem);
-        }
-
-        // Build structured data for WebSocket payload
+            try {
+                problem = problemRepo.save(newProblem(root));
+            } catch (DataIntegrityViolationException e) {
+                // Inserted meanwhile by another match or the importer; leetcode_id is unique
+                problem = problemRepo.findByLeetcodeId(leetcodeId).orElseThrow(() -> e);
+            }
+        } else if (problem.getMethodSignature() == null || problem.getMethodSignature().isEmpty()) {
+            // Update existing problems that don't have the method set
+            Matcher method = methodSignature(root);
+            if (method != null) {
+                problem.setMethodName(method.group(1));
+                problem.setMethodSignature(method.group());
+                problem = problemRepo.save(problem);
+                problemSnapshotCache.invalidate(problem.getProblemId());
+            }
+        }
+
+        // Extract and save test cases from examples if not already saved
+        extractAndSaveTestCases(problem, root);
+        return problem;
+    }
+
+    /**
+     * An unsaved Problem entity for a question of the catalog.
+     */
+    Problem newProblem(JsonNode root) {
+        Problem problem = new Problem();
+        problem.setLeetcodeId(root.has("problem_id") ? root.get("problem_id").asText() : "");
+        problem.setTitle(root.has("title") ? root.get("title").asText() : "Unknown");
+        problem.setProblemSlug(root.has("problem_slug") ? root.get("problem_slug").asText() : "");
+        problem.setDifficulty(mapDifficulty(root.has("difficulty") ? root.get("difficulty").asText() : "Medium"));
+        problem.setSource("LEETCODE");
+        problem.setDescription(cleanDescription(root.has("description") ? root.get("description").asText() : ""));
+
+        // Extract method name and signature from Java code snippet
+        Matcher method = methodSignature(root);
+        if (method != null) {
+            problem.setMethodName(method.group(1));
+            problem.setMethodSignature(method.group());
+        }
+        return problem;
+    }
+
+    /**
+     * The loaded problem catalog, waiting for a background load to finish;
+     * null if it could not be loaded.
+     */
+    ProblemCatalog catalog() {
+        return catalog.join();
+    }
+
+    /**
+     * Record problems whose test cases are already saved, e.g. by a bulk
+     * import, so match creation doesn't look them up again.
+     */
+    void markSeeded(Collection<Long> problemIds) {
+        seededProblems.addAll(problemIds);
+    }
+
+    /**
+     * Examples, constraints and code snippets of a problem, structured for
+     * the WebSocket payload.
+     */
+    public Map<String, Object> problemDetails(JsonNode root) {
         List<Map<String, Object>> examples = new ArrayList<>();
         if (root.has("examples") && root.get("examples").isArray()) {
             for (JsonNode ex : root.get("examples")) {
@@ -134,11 +316,7 @@ public class LeetCodeProblemService {
                     .forEachRemaining(entry -> codeSnippets.put(entry.getKey(), entry.getValue().asText()));
         }
 
-        // Extract and save test cases from examples if not already saved
-        extractAndSaveTestCases(problem, root);
-
         Map<String, Object> result = new HashMap<>();
-        result.put("problem", problem);
         result.put("examples", examples);
         result.put("constraints", constraints);
         result.put("codeSnippets", codeSnippets);
@@ -151,9 +329,13 @@ public class LeetCodeProblemService {
      * We extract the raw Input line and Output line as test case data.
      */
     private void extractAndSaveTestCases(Problem problem, JsonNode root) {
+        if (seededProblems.contains(problem.getProblemId())) {
+            return;
+        }
         // Check if test cases already exist for this problem
-        List<TestCase> existing = testCaseRepo.findByProblem(problem);
+        List<TestCase> existing = problemSnapshotCache.testCases(problem);
         if (!existing.isEmpty()) {
+            seededProblems.add(problem.getProblemId());
             return; // Already have test cases
         }
 
@@ -161,6 +343,22 @@ public class LeetCodeProblemService {
             return;
         }
 
+        List<TestCase> testCases = testCaseRepo.saveAll(exampleTestCases(problem, root));
+        // The cache holds the empty list it just read
+        problemSnapshotCache.invalidate(problem.getProblemId());
+        seededProblems.add(problem.getProblemId());
+        System.out.println("Saved " + testCases.size() + " test cases for problem: " + problem.getTitle());
+    }
+
+    /**
+     * Unsaved test cases parsed from a question's examples.
+     */
+    List<TestCase> exampleTestCases(Problem problem, JsonNode root) {
+        List<TestCase> testCases = new ArrayList<>();
+        if (!root.has("examples") || !root.get("examples").isArray()) {
+            return testCases;
+        }
+
         for (JsonNode ex : root.get("examples")) {
             String text = ex.has("example_text") ? ex.get("example_text").asText() : "";
             if (text.isEmpty())
@@ -175,12 +373,10 @@ public class LeetCodeProblemService {
                 testCase.setProblem(problem);
                 testCase.setInput(input);
                 testCase.setExpectedOutput(output);
-                testCaseRepo.save(testCase);
+                testCases.add(testCase);
             }
         }
-
-        System.out.println("Saved " + testCaseRepo.findByProblem(problem).size()
-                + " test cases for problem: " + problem.getTitle());
+        return testCases;
     }
 
     /**
@@ -216,12 +412,13 @@ public class LeetCodeProblemService {
     }
 
     /**
-     * Extract method name from Java code snippet.
+     * Find the method declaration in the Java code snippet.
      * Example: "class Solution {\n public int[] twoSum(int[] nums, int target)
      * {\n..."
-     * Returns: "twoSum"
+     * Returns a match of "public int[] twoSum(int[] nums, int target)", with
+     * the method name "twoSum" as group 1; null if there is none.
      */
-    private String extractMethodName(JsonNode root) {
+    private Matcher methodSignature(JsonNode root) {
         if (!root.has("code_snippets")) {
             return null;
         }
@@ -233,15 +430,8 @@ public class LeetCodeProblemService {
 
         String javaCode = codeSnippets.get("java").asText();
 
-        // Pattern to match: public <returnType> methodName(
-        // This captures the method name from the Java code snippet
-        Pattern pattern = Pattern.compile("public\\s+\\w+(?:<[^>]+>)?(?:\\[\\])?\\s+(\\w+)\\s*\\(");
-        Matcher matcher = pattern.matcher(javaCode);
-
-        if (matcher.find()) {
-            return matcher.group(1);
-        }
-
-        return null;
+        // Matches: public <returnType> methodName(<params>)
+        Matcher matcher = METHOD_SIGNATURE.matcher(javaCode);
+        return matcher.find() ? matcher : null;
     }
 }
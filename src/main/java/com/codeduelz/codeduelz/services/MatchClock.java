@@ -0,0 +1,184 @@
+package com.codeduelz.codeduelz.services;
+
+import com.codeduelz.codeduelz.entities.Match;
+import com.codeduelz.codeduelz.entities.MatchStatus;
+import com.codeduelz.codeduelz.repo.MatchRepo;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Server-side clock for ongoing matches: fires a callback when a match's time
+ * limit runs out, whether or not its players are still connected.
+ *
+ * Each ongoing match has one scheduled deadline, cancelled when the match
+ * ends, so the timer only holds active matches. start() rebuilds the
+ * deadlines of every ongoing match, so matches survive a restart; ones that
+ * expired while the server was down fire right away. Matches that expired
+ * more than match.clock.stale-grace-seconds before the start (e.g. abandoned
+ * before the clock existed) are closed without a result instead, so their
+ * players aren't penalised for a timeout nobody saw.
+ *
+ * A match is scheduled right away only on the node that created it. So that
+ * its deadline survives that node going down, every node also looks for
+ * ongoing matches it has no deadline for every match.clock.resync-seconds
+ * (0 to never) and schedules them, the same way start() does. A deadline may
+ * then fire on several nodes; the conditional update in
+ * MatchCompletionService lets only one of them time the match out. A match
+ * whose node went down can run past its deadline by up to the resync
+ * interval.
+ *
+ * Match start times are LocalDateTimes in match.clock.zone (the system zone
+ * by default), the zone every node writes them in; all nodes must agree.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MatchClock {
+
+    private static final int DEFAULT_TIME_LIMIT_SECONDS = 900;
+
+    private final MatchRepo matchRepo;
+    private final MatchCompletionService matchCompletionService;
+
+    @Value("${match.clock.stale-grace-seconds:300}")
+    private long staleGraceSeconds;
+
+    // Blank for the system default
+    @Value("${match.clock.zone:}")
+    private String zone;
+
+    @Value("${match.clock.resync-seconds:60}")
+    private long resyncSeconds;
+
+    // matchId -> its pending deadline
+    private final Map<Long, ScheduledFuture<?>> deadlines = new ConcurrentHashMap<>();
+    private ScheduledThreadPoolExecutor timer;
+    private Consumer<Long> onDeadline;
+    private ZoneId zoneId = ZoneId.systemDefault();
+
+    /**
+     * Start the clock and schedule every ongoing match. onDeadline runs on the
+     * timer thread, so it should hand real work off elsewhere.
+     */
+    public void start(Consumer<Long> onDeadline) {
+        this.onDeadline = onDeadline;
+        if (!zone.isBlank()) {
+            zoneId = ZoneId.of(zone);
+        }
+        timer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "match-clock");
+            t.setDaemon(true);
+            return t;
+        });
+        // Drop cancelled deadlines right away instead of when they would have fired
+        timer.setRemoveOnCancelPolicy(true);
+
+        Synced synced = scheduleOngoing();
+        log.info("Match clock started with {} ongoing matches; closed {} stale ones without a result",
+                synced.scheduled(), synced.closed());
+        if (resyncSeconds > 0) {
+            timer.scheduleWithFixedDelay(this::resync, resyncSeconds, resyncSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    // Schedule the ongoing matches that have no deadline here yet and close
+    // the stale ones
+    private Synced scheduleOngoing() {
+        long staleBeforeMs = System.currentTimeMillis() - staleGraceSeconds * 1000;
+        int scheduled = 0;
+        int closed = 0;
+        for (Match match : matchRepo.findByStatus(MatchStatus.ONGOING)) {
+            if (deadlines.containsKey(match.getMatchId())) {
+                continue;
+            }
+            if (deadlineMs(match) >= staleBeforeMs) {
+                schedule(match);
+                scheduled++;
+            } else if (matchCompletionService.abandon(match)) {
+                closed++;
+            }
+        }
+        return new Synced(scheduled, closed);
+    }
+
+    // Runs on the timer thread; an exception would stop any further resyncs
+    private void resync() {
+        try {
+            Synced synced = scheduleOngoing();
+            if (synced.scheduled() > 0 || synced.closed() > 0) {
+                log.info("Match clock took over {} ongoing matches from other nodes; closed {} stale ones",
+                        synced.scheduled(), synced.closed());
+            }
+        } catch (Exception e) {
+            log.warn("Match clock resync failed: {}", e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+    }
+
+    public void schedule(Match match) {
+        Long matchId = match.getMatchId();
+        long delayMs = Math.max(0, deadlineMs(match) - System.currentTimeMillis());
+        // A deadline that is already due can fire before it is put in the map.
+        // It waits until it has been, then removes only itself, so it neither
+        // stays behind nor drops a newer deadline for the same match.
+        CompletableFuture<ScheduledFuture<?>> self = new CompletableFuture<>();
+        ScheduledFuture<?> deadline = timer.schedule(() -> {
+            deadlines.remove(matchId, self.join());
+            onDeadline.accept(matchId);
+        }, delayMs, TimeUnit.MILLISECONDS);
+        ScheduledFuture<?> previous = deadlines.put(matchId, deadline);
+        self.complete(deadline);
+        if (previous != null) {
+            previous.cancel(false);
+        }
+    }
+
+    /**
+     * Forget a match's deadline, e.g. because it has a winner.
+     */
+    public void cancel(Long matchId) {
+        ScheduledFuture<?> deadline = deadlines.remove(matchId);
+        if (deadline != null) {
+            deadline.cancel(false);
+        }
+    }
+
+    public boolean isExpired(Match match) {
+        return System.currentTimeMillis() >= deadlineMs(match);
+    }
+
+    public int activeMatches() {
+        return deadlines.size();
+    }
+
+    private long deadlineMs(Match match) {
+        long startMs = match.getStartTime() != null
+                ? match.getStartTime().atZone(zoneId).toInstant().toEpochMilli()
+                : System.currentTimeMillis();
+        int limitSeconds = match.getTimeLimitSeconds() != null
+                ? match.getTimeLimitSeconds()
+                : DEFAULT_TIME_LIMIT_SECONDS;
+        return startMs + limitSeconds * 1000L;
+    }
+
+    private record Synced(int scheduled, int closed) {
+    }
+}
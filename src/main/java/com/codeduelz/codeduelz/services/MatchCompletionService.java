@@ -0,0 +1,142 @@
+package com.codeduelz.codeduelz.services;
+
+import com.codeduelz.codeduelz.entities.Match;
+import com.codeduelz.codeduelz.entities.MatchStatus;
+import com.codeduelz.codeduelz.entities.Notification;
+import com.codeduelz.codeduelz.entities.NotificationType;
+import com.codeduelz.codeduelz.entities.Profile;
+import com.codeduelz.codeduelz.entities.User;
+import com.codeduelz.codeduelz.repo.MatchRepo;
+import com.codeduelz.codeduelz.repo.ProfileRepo;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Writes the end of a match in one transaction: the match row, both players'
+ * profiles and their result notifications either all change or none do.
+ *
+ * Profiles are updated in place (rating = rating + change), so two matches
+ * finishing at once for the same player can't overwrite each other. Nothing
+ * is sent to clients here; callers publish the result and push the returned
+ * notifications once the transaction has committed.
+ */
+@Service
+@RequiredArgsConstructor
+public class MatchCompletionService {
+
+    private final MatchRepo matchRepo;
+    private final ProfileRepo profileRepo;
+    private final RatingEngine ratingEngine;
+    private final NotificationService notificationService;
+
+    public record Completion(RatingEngine.Result rating, List<Notification> notifications) {
+    }
+
+    /**
+     * Complete an ongoing match with a winner. Returns null if the match was
+     * already completed, e.g. by the opponent's submission or a timeout.
+     */
+    @Transactional
+    public Completion declareWinner(Match match, User winner) {
+        boolean isPlayer1 = match.getPlayer1().getUserId().equals(winner.getUserId());
+        Profile[] profiles = profiles(match);
+        RatingEngine.Result rating = ratingEngine.rate(profiles[0], profiles[1], isPlayer1);
+        if (!complete(match, winner.getUserId(), rating)) {
+            return null;
+        }
+
+        recordResult(match.getPlayer1(), rating.player1Change(), rating.player1Deviation(), isPlayer1);
+        recordResult(match.getPlayer2(), rating.player2Change(), rating.player2Deviation(), !isPlayer1);
+
+        User loser = isPlayer1 ? match.getPlayer2() : match.getPlayer1();
+        int winnerChange = isPlayer1 ? rating.player1Change() : rating.player2Change();
+        int loserChange = isPlayer1 ? rating.player2Change() : rating.player1Change();
+        return new Completion(rating, List.of(
+                notificationService.store(winner, NotificationType.MATCH_RESULT,
+                        "You won against " + loser.getUsername() + "! " + signed(winnerChange) + " ELO",
+                        loser.getUsername(), match.getMatchId()),
+                notificationService.store(loser, NotificationType.MATCH_RESULT,
+                        "You lost to " + winner.getUsername() + ". " + signed(loserChange) + " ELO",
+                        winner.getUsername(), match.getMatchId())));
+    }
+
+    /**
+     * Complete an ongoing match that ran out of time; both players lose.
+     * Returns null if the match was already completed.
+     */
+    @Transactional
+    public Completion timeOut(Match match) {
+        Profile[] profiles = profiles(match);
+        RatingEngine.Result rating = ratingEngine.timeout(profiles[0], profiles[1]);
+        if (!complete(match, null, rating)) {
+            return null;
+        }
+
+        recordResult(match.getPlayer1(), rating.player1Change(), rating.player1Deviation(), false);
+        recordResult(match.getPlayer2(), rating.player2Change(), rating.player2Deviation(), false);
+
+        return new Completion(rating, List.of(
+                notificationService.store(match.getPlayer1(), NotificationType.MATCH_RESULT,
+                        "Match timed out. " + signed(rating.player1Change()) + " ELO",
+                        match.getPlayer2().getUsername(), match.getMatchId()),
+                notificationService.store(match.getPlayer2(), NotificationType.MATCH_RESULT,
+                        "Match timed out. " + signed(rating.player2Change()) + " ELO",
+                        match.getPlayer1().getUsername(), match.getMatchId())));
+    }
+
+    /**
+     * Close an ongoing match with no winner, no rating changes and no
+     * notifications, e.g. one abandoned long before a restart. Returns false
+     * if the match was already completed.
+     */
+    @Transactional
+    public boolean abandon(Match match) {
+        LocalDateTime endTime = LocalDateTime.now();
+        if (matchRepo.abandonIfOngoing(match.getMatchId(), endTime) == 0) {
+            return false;
+        }
+        match.setStatus(MatchStatus.COMPLETED);
+        match.setAbandoned(true);
+        match.setWinnerId(null);
+        match.setEndTime(endTime);
+        match.setPlayer1RatingChange(0);
+        match.setPlayer2RatingChange(0);
+        return true;
+    }
+
+    // Both players' profiles in one query; null where a player has none
+    private Profile[] profiles(Match match) {
+        Profile[] profiles = new Profile[2];
+        for (Profile profile : profileRepo.findByUserIn(List.of(match.getPlayer1(), match.getPlayer2()))) {
+            Long userId = profile.getUser().getUserId();
+            profiles[userId.equals(match.getPlayer1().getUserId()) ? 0 : 1] = profile;
+        }
+        return profiles;
+    }
+
+    private boolean complete(Match match, Long winnerId, RatingEngine.Result rating) {
+        LocalDateTime endTime = LocalDateTime.now();
+        if (matchRepo.completeIfOngoing(match.getMatchId(), winnerId, endTime,
+                rating.player1Change(), rating.player2Change()) == 0) {
+            return false;
+        }
+        match.setStatus(MatchStatus.COMPLETED);
+        match.setWinnerId(winnerId);
+        match.setEndTime(endTime);
+        match.setPlayer1RatingChange(rating.player1Change());
+        match.setPlayer2RatingChange(rating.player2Change());
+        return true;
+    }
+
+    private void recordResult(User player, int ratingChange, Double ratingDeviation, boolean won) {
+        profileRepo.recordResult(player.getUserId(), ratingChange, ratingDeviation, won ? 1 : 0, won ? 0 : 1);
+    }
+
+    private static String signed(int ratingChange) {
+        return ratingChange >= 0 ? "+" + ratingChange : String.valueOf(ratingChange);
+    }
+}
@@ -0,0 +1,122 @@
+package com.codeduelz.codeduelz.services;
+
+import com.codeduelz.codeduelz.entities.Problem;
+import com.codeduelz.codeduelz.entities.TestCase;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * The problem section of the match-start message, built and serialized to
+ * JSON once per problem and shared by every match on it.
+ *
+ * Each match message only adds its own small fields (match ID, players,
+ * start time); the cached problem JSON is embedded as a raw value, so the
+ * description, code snippets and test cases are never walked, queried or
+ * serialized again.
+ *
+ * Payloads carry the ProblemSnapshotCache version they were built from and
+ * are only served while it is current, so invalidating a problem's snapshot
+ * also retires its payload; a payload whose build an invalidation raced past
+ * is returned but not kept. invalidateProblem() drops one eagerly.
+ */
+@Service
+@RequiredArgsConstructor
+public class MatchPayloadCache {
+
+    private final ProblemSnapshotCache problemSnapshotCache;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Value("${match.payload-cache.max-entries:1000}")
+    private int maxEntries;
+
+    private record Payload(long version, RawValue json) {
+    }
+
+    // problemId -> serialized problem payload, least recently used evicted first
+    private final LinkedHashMap<Long, Payload> payloads = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Payload> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    /**
+     * Build the message that starts a match. details supplies the problem's
+     * examples, constraints and code snippets, and is only called the first
+     * time a problem is used.
+     */
+    public Map<String, Object> matchMessage(Long matchId, Problem problem, Supplier<Map<String, Object>> details,
+            int timeLimitSeconds, String player1, String player2) {
+        Map<String, Object> message = new HashMap<>();
+        message.put("matchId", matchId);
+        message.put("problem", problemPayload(problem, details));
+        message.put("timeLimitSeconds", timeLimitSeconds);
+        message.put("startTimeMs", System.currentTimeMillis());
+        message.put("player1", Map.of("name", player1));
+        message.put("player2", Map.of("name", player2));
+        return message;
+    }
+
+    public RawValue problemPayload(Problem problem, Supplier<Map<String, Object>> details) {
+        Long problemId = problem.getProblemId();
+        long version = problemSnapshotCache.version(problemId);
+        synchronized (payloads) {
+            Payload cached = payloads.get(problemId);
+            if (cached != null && cached.version() == version) {
+                return cached.json();
+            }
+        }
+        // Built outside the lock; two matches racing on a new problem just build it twice
+        RawValue payload = build(problem, details.get());
+        synchronized (payloads) {
+            // Not kept if the problem was invalidated while it was being built
+            if (problemSnapshotCache.version(problemId) == version) {
+                payloads.put(problemId, new Payload(version, payload));
+            }
+        }
+        return payload;
+    }
+
+    public void invalidateProblem(Long problemId) {
+        synchronized (payloads) {
+            payloads.remove(problemId);
+        }
+    }
+
+    private RawValue build(Problem problem, Map<String, Object> details) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("title", problem.getTitle());
+        payload.put("description", problem.getDescription());
+        payload.put("difficulty", problem.getDifficulty() != null ? problem.getDifficulty().name() : "MEDIUM");
+        payload.put("url", "https://leetcode.com/problems/" + problem.getProblemSlug() + "/");
+        payload.put("examples", details.get("examples"));
+        payload.put("constraints", details.get("constraints"));
+        payload.put("codeSnippets", details.get("codeSnippets"));
+
+        List<Map<String, String>> testCaseData = new ArrayList<>();
+        for (TestCase tc : problemSnapshotCache.testCases(problem)) {
+            Map<String, String> tcMap = new HashMap<>();
+            tcMap.put("input", tc.getInput());
+            tcMap.put("expectedOutput", tc.getExpectedOutput());
+            testCaseData.add(tcMap);
+        }
+        payload.put("testCases", testCaseData);
+
+        try {
+            return new RawValue(objectMapper.writeValueAsString(payload));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize payload for problem " + problem.getProblemId(), e);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.codeduelz.codeduelz.services;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Where players wait for a match, one pool per difficulty. Implementations
+ * are selected with the matchmaking.backend property: "memory" (default) keeps
+ * the pools in this JVM, "redis" shares them between all app nodes.
+ *
+ * A player waits in at most one pool. Paired players stay claimed until
+ * release() or requeue(), and their joins are ignored meanwhile.
+ */
+public interface MatchmakingQueue {
+
+    record Ticket(String username, int rating, long seq, long joinedAtMs) {
+    }
+
+    record Pair(Ticket first, Ticket second) {
+    }
+
+    /**
+     * Queue a player for a difficulty; joining another difficulty moves them.
+     */
+    void join(String username, String difficulty, int rating);
+
+    void leave(String username);
+
+    /**
+     * Put a paired player back in their pool, keeping their place in line,
+     * e.g. after the match couldn't be created.
+     */
+    void requeue(String difficulty, Ticket ticket);
+
+    /**
+     * Mark a paired player's match as created, so they may queue again.
+     */
+    void release(String username);
+
+    boolean isWaiting(String username);
+
+    int size(String difficulty);
+
+    /**
+     * Pair up waiting players in every pool and hand each pair to the consumer
+     * along with its difficulty. Each player is handed out at most once, even
+     * when several nodes match at the same time.
+     */
+    void match(long nowMs, BiConsumer<String, Pair> onPair);
+}
@@ -1,6 +1,7 @@
 package com.codeduelz.codeduelz.services;
 
 import com.codeduelz.codeduelz.dtos.NotificationDto;
+import com.codeduelz.codeduelz.entities.Notification;
 import com.codeduelz.codeduelz.entities.NotificationType;
 import com.codeduelz.codeduelz.entities.User;
 
@@ -8,6 +9,14 @@ import java.util.List;
 
 public interface NotificationService {
     void create(User recipient, NotificationType type, String message, String fromUsername, Long referenceId);
+
+    /**
+     * Save a notification without pushing it, e.g. inside a transaction;
+     * push() it once the transaction has committed.
+     */
+    Notification store(User recipient, NotificationType type, String message, String fromUsername, Long referenceId);
+
+    void push(Notification notification);
     List<NotificationDto> getNotifications(User user);
     long getUnreadCount(User user);
     void markAsRead(Long notificationId, User user);
@@ -0,0 +1,218 @@
+package com.codeduelz.codeduelz.services;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+/**
+ * Compares a program's output with the expected output without building
+ * normalized copies of either string.
+ *
+ * matches() applies the judge's normalization rules in a single pass over
+ * both inputs: CRLF is treated as LF, whitespace after ',' or '[' and before
+ * ']' is ignored, and leading/trailing whitespace is ignored. So
+ * "[1, 2, 3]" matches "[1,2,3]".
+ *
+ * matchesTokens() is a looser, streaming comparison for problems with
+ * floating-point answers or free-form spacing: both sides are split into
+ * tokens (whitespace-separated, with '[', ']' and ',' as tokens of their
+ * own) and numeric tokens are compared within a tolerance.
+ */
+public final class OutputComparator {
+
+    private OutputComparator() {
+    }
+
+    /**
+     * Compare two outputs under the judge's whitespace normalization rules.
+     */
+    public static boolean matches(CharSequence expected, CharSequence actual) {
+        NormalizedCursor e = new NormalizedCursor(expected == null ? "" : expected);
+        NormalizedCursor a = new NormalizedCursor(actual == null ? "" : actual);
+        while (true) {
+            int ec = e.next();
+            int ac = a.next();
+            if (ec != ac) {
+                return false;
+            }
+            if (ec < 0) {
+                return true;
+            }
+        }
+    }
+
+    public static boolean matchesTokens(CharSequence expected, CharSequence actual, double tolerance) {
+        try {
+            return matchesTokens(new StringReader(expected == null ? "" : expected.toString()),
+                    new StringReader(actual == null ? "" : actual.toString()), tolerance);
+        } catch (IOException e) {
+            // StringReader never throws
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Compare two outputs token by token, reading both sides incrementally.
+     * Numbers match when they differ by at most tolerance, absolutely or
+     * relative to the expected value.
+     */
+    public static boolean matchesTokens(Reader expected, Reader actual, double tolerance) throws IOException {
+        Tokenizer e = new Tokenizer(expected);
+        Tokenizer a = new Tokenizer(actual);
+        while (true) {
+            boolean hasExpected = e.next();
+            boolean hasActual = a.next();
+            if (hasExpected != hasActual) {
+                return false;
+            }
+            if (!hasExpected) {
+                return true;
+            }
+            if (!tokensMatch(e.token, a.token, tolerance)) {
+                return false;
+            }
+        }
+    }
+
+    private static boolean tokensMatch(StringBuilder expected, StringBuilder actual, double tolerance) {
+        if (expected.compareTo(actual) == 0) {
+            return true;
+        }
+        if (!looksNumeric(expected) || !looksNumeric(actual)) {
+            return false;
+        }
+        try {
+            double e = Double.parseDouble(expected.toString());
+            double a = Double.parseDouble(actual.toString());
+            double diff = Math.abs(e - a);
+            return diff <= tolerance || diff <= tolerance * Math.abs(e);
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+    }
+
+    private static boolean looksNumeric(CharSequence token) {
+        boolean digit = false;
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digit = true;
+            } else if (c != '-' && c != '+' && c != '.' && c != 'e' && c != 'E') {
+                return false;
+            }
+        }
+        return digit;
+    }
+
+    // Same set as the regex \s
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Yields the normalized characters of a CharSequence one at a time.
+     */
+    private static final class NormalizedCursor {
+        private final CharSequence s;
+        private final int end;
+        private int pos;
+        // Last non-whitespace character emitted, or 0 at the start
+        private char prev;
+        // Whitespace run currently being emitted, if it was kept
+        private int runPos;
+        private int runEnd;
+
+        NormalizedCursor(CharSequence s) {
+            this.s = s;
+            int start = 0;
+            int stop = s.length();
+            while (start < stop && s.charAt(start) <= ' ') {
+                start++;
+            }
+            while (stop > start && s.charAt(stop - 1) <= ' ') {
+                stop--;
+            }
+            this.pos = start;
+            this.end = stop;
+        }
+
+        int next() {
+            while (true) {
+                if (runPos < runEnd) {
+                    char c = s.charAt(runPos++);
+                    if (c == '\r' && runPos < runEnd && s.charAt(runPos) == '\n') {
+                        continue;
+                    }
+                    return c;
+                }
+                if (pos >= end) {
+                    return -1;
+                }
+                char c = s.charAt(pos);
+                if (!isSpace(c)) {
+                    pos++;
+                    prev = c;
+                    return c;
+                }
+                int runStop = pos;
+                while (runStop < end && isSpace(s.charAt(runStop))) {
+                    runStop++;
+                }
+                // The range is trimmed, so a whitespace run is always followed by a non-space
+                boolean dropped = prev == ',' || prev == '[' || s.charAt(runStop) == ']';
+                if (!dropped) {
+                    runPos = pos;
+                    runEnd = runStop;
+                }
+                pos = runStop;
+            }
+        }
+    }
+
+    /**
+     * Splits a character stream into tokens, reusing one buffer.
+     */
+    private static final class Tokenizer {
+        private final Reader reader;
+        private final StringBuilder token = new StringBuilder();
+        private int pending = -2;
+
+        Tokenizer(Reader reader) {
+            this.reader = reader;
+        }
+
+        boolean next() throws IOException {
+            token.setLength(0);
+            int c = read();
+            while (c >= 0 && c <= ' ') {
+                c = read();
+            }
+            if (c < 0) {
+                return false;
+            }
+            if (isPunctuation(c)) {
+                token.append((char) c);
+                return true;
+            }
+            while (c > ' ' && !isPunctuation(c)) {
+                token.append((char) c);
+                c = read();
+            }
+            pending = c;
+            return true;
+        }
+
+        private int read() throws IOException {
+            if (pending != -2) {
+                int c = pending;
+                pending = -2;
+                return c;
+            }
+            return reader.read();
+        }
+
+        private static boolean isPunctuation(int c) {
+            return c == '[' || c == ']' || c == ',';
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package com.codeduelz.codeduelz.services;
+
+import com.codeduelz.codeduelz.entities.Difficulty;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The LeetCode problem set in a compact binary file that is memory-mapped
+ * instead of being held as JSON trees on the heap.
+ *
+ * Layout: a header (magic, version), then one UTF-8 JSON blob per question,
+ * then an index of (difficulty, offset, length, problem id, slug) per
+ * question, then a footer with the index offset and question count. Only the
+ * index is read into the heap; a question is parsed from its blob when it is
+ * asked for.
+ *
+ * Build the file from merged_problems.json with a Builder; the blobs are
+ * written as questions come in, so only the index is kept in memory. Where no
+ * file can be written, a Builder without a target keeps the same layout in a
+ * heap buffer instead.
+ */
+public final class ProblemCatalog {
+
+    private static final int MAGIC = 0x43445A43; // "CDZC"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 8;
+    private static final int FOOTER_BYTES = 12;
+
+    private final ObjectMapper objectMapper;
+    // The mapped file, or a heap buffer for a catalog built in memory
+    private final ByteBuffer data;
+    private final int[] offsets;
+    private final int[] lengths;
+    private final String[] leetcodeIds;
+    private final String[] slugs;
+    // difficulty ordinal -> positions of its questions in offsets/lengths
+    private final int[][] byDifficulty;
+    // question -> its difficulty ordinal and its position in byDifficulty
+    private final byte[] difficultyOf;
+    private final int[] positionOf;
+    private final Map<String, Integer> indexById;
+
+    private ProblemCatalog(ObjectMapper objectMapper, ByteBuffer data, int[] offsets, int[] lengths,
+            String[] leetcodeIds, String[] slugs, int[][] byDifficulty, byte[] difficultyOf, int[] positionOf) {
+        this.objectMapper = objectMapper;
+        this.data = data;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.leetcodeIds = leetcodeIds;
+        this.slugs = slugs;
+        this.byDifficulty = byDifficulty;
+        this.difficultyOf = difficultyOf;
+        this.positionOf = positionOf;
+        this.indexById = new HashMap<>(leetcodeIds.length * 2);
+        for (int i = 0; i < leetcodeIds.length; i++) {
+            indexById.putIfAbsent(leetcodeIds[i], i);
+        }
+    }
+
+    /**
+     * Map a catalog file. Throws IOException if it is missing, truncated or
+     * in an older format, in which case it should be rebuilt.
+     */
+    public static ProblemCatalog open(Path file, ObjectMapper objectMapper) throws IOException {
+        MappedByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        return read(data, objectMapper, file);
+    }
+
+    private static ProblemCatalog read(ByteBuffer data, ObjectMapper objectMapper, Object source)
+            throws IOException {
+        if (data.capacity() < HEADER_BYTES + FOOTER_BYTES
+                || data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+            throw new IOException("Not a current problem catalog: " + source);
+        }
+        long indexOffset = data.getLong(data.capacity() - FOOTER_BYTES);
+        int count = data.getInt(data.capacity() - 4);
+        int indexEnd = data.capacity() - FOOTER_BYTES;
+        if (indexOffset < HEADER_BYTES || indexOffset > indexEnd || count < 0) {
+            throw new IOException("Corrupt problem catalog index: " + source);
+        }
+
+        Difficulty[] difficulties = Difficulty.values();
+        int[] offsets = new int[count];
+        int[] lengths = new int[count];
+        String[] leetcodeIds = new String[count];
+        String[] slugs = new String[count];
+        byte[] difficultyOf = new byte[count];
+        int[] perDifficulty = new int[difficulties.length];
+        ByteBuffer index = data.slice((int) indexOffset, indexEnd - (int) indexOffset);
+        try {
+            for (int i = 0; i < count; i++) {
+                difficultyOf[i] = index.get();
+                offsets[i] = index.getInt();
+                lengths[i] = index.getInt();
+                leetcodeIds[i] = readString(index);
+                slugs[i] = readString(index);
+                perDifficulty[difficultyOf[i]]++;
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt problem catalog index: " + source, e);
+        }
+        if (index.hasRemaining()) {
+            throw new IOException("Corrupt problem catalog index: " + source);
+        }
+        int[][] byDifficulty = new int[difficulties.length][];
+        for (int d = 0; d < difficulties.length; d++) {
+            byDifficulty[d] = new int[perDifficulty[d]];
+        }
+        int[] filled = new int[difficulties.length];
+        int[] positionOf = new int[count];
+        for (int i = 0; i < count; i++) {
+            positionOf[i] = filled[difficultyOf[i]]++;
+            byDifficulty[difficultyOf[i]][positionOf[i]] = i;
+        }
+        return new ProblemCatalog(objectMapper, data, offsets, lengths, leetcodeIds, slugs, byDifficulty,
+                difficultyOf, positionOf);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public int size() {
+        return offsets.length;
+    }
+
+    public int size(Difficulty difficulty) {
+        return byDifficulty[difficulty.ordinal()].length;
+    }
+
+    public String leetcodeId(int index) {
+        return leetcodeIds[index];
+    }
+
+    public String slug(int index) {
+        return slugs[index];
+    }
+
+    /**
+     * Index of the question with this LeetCode problem id, or -1.
+     */
+    public int indexOf(String leetcodeId) {
+        Integer index = indexById.get(leetcodeId);
+        return index == null ? -1 : index;
+    }
+
+    public Difficulty difficultyOf(int index) {
+        return Difficulty.values()[difficultyOf[index]];
+    }
+
+    /**
+     * Position of a question among the questions of its difficulty, as used
+     * by question(Difficulty, int).
+     */
+    public int positionOf(int index) {
+        return positionOf[index];
+    }
+
+    /**
+     * Whether the catalog is held on the heap rather than mapped from a file.
+     */
+    public boolean inMemory() {
+        return !(data instanceof MappedByteBuffer);
+    }
+
+    /**
+     * Size of the mapped file; it lives in the page cache, not the heap.
+     */
+    public long mappedBytes() {
+        return inMemory() ? 0 : data.capacity();
+    }
+
+    /**
+     * Rough heap footprint of the index: the offset, length, difficulty and
+     * position arrays, the id and slug strings and the id lookup, plus the
+     * whole catalog if it is held in memory.
+     */
+    public long retainedBytes() {
+        long bytes = 17L * offsets.length + (inMemory() ? data.capacity() : 0);
+        for (int i = 0; i < offsets.length; i++) {
+            // String header and backing array, Latin-1 compacted, plus a map entry and boxed index
+            bytes += 2 * 40L + leetcodeIds[i].length() + slugs[i].length() + 48;
+        }
+        return bytes;
+    }
+
+    /**
+     * The index-th question of a difficulty, parsed from the mapped file.
+     */
+    public JsonNode question(Difficulty difficulty, int index) {
+        return question(byDifficulty[difficulty.ordinal()][index]);
+    }
+
+    /**
+     * The index-th question over all difficulties.
+     */
+    public JsonNode question(int index) {
+        try {
+            ByteBuffer blob = data.slice(offsets[index], lengths[index]);
+            return objectMapper.readTree(new ByteBufferBackedInputStream(blob));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read problem " + index + " from catalog", e);
+        }
+    }
+
+    /**
+     * Writes a catalog file. Add questions one at a time, then finish(); the
+     * file only replaces the target once it is complete, and close() without
+     * finish() throws the partial file away. A Builder without a target writes
+     * to memory; take the finished catalog from catalog().
+     */
+    public static final class Builder implements AutoCloseable {
+        private final ObjectMapper objectMapper;
+        private final Function<JsonNode, Difficulty> difficultyOf;
+        // Both null when building in memory
+        private final Path target;
+        private final Path temp;
+        private final ByteArrayOutputStream memory;
+        private final DataOutputStream out;
+        private long written = HEADER_BYTES;
+        private byte[] difficulties = new byte[1024];
+        private int[] offsets = new int[1024];
+        private int[] lengths = new int[1024];
+        private String[] leetcodeIds = new String[1024];
+        private String[] slugs = new String[1024];
+        private int count;
+        private boolean finished;
+
+        public Builder(Path target, ObjectMapper objectMapper, Function<JsonNode, Difficulty> difficultyOf)
+                throws IOException {
+            this.objectMapper = objectMapper;
+            this.difficultyOf = difficultyOf;
+            this.target = target.toAbsolutePath();
+            this.temp = Files.createTempFile(this.target.getParent(), "problems", ".catalog.tmp");
+            this.memory = null;
+            this.out = start(Files.newOutputStream(temp));
+        }
+
+        public Builder(ObjectMapper objectMapper, Function<JsonNode, Difficulty> difficultyOf) throws IOException {
+            this.objectMapper = objectMapper;
+            this.difficultyOf = difficultyOf;
+            this.target = null;
+            this.temp = null;
+            this.memory = new ByteArrayOutputStream();
+            this.out = start(memory);
+        }
+
+        private static DataOutputStream start(OutputStream stream) throws IOException {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            return out;
+        }
+
+        public void add(JsonNode question) throws IOException {
+            byte[] blob = objectMapper.writeValueAsBytes(question);
+            if (written + blob.length > Integer.MAX_VALUE) {
+                throw new IOException("Problem catalog would exceed 2 GB");
+            }
+            if (count == offsets.length) {
+                difficulties = Arrays.copyOf(difficulties, count * 2);
+                offsets = Arrays.copyOf(offsets, count * 2);
+                lengths = Arrays.copyOf(lengths, count * 2);
+                leetcodeIds = Arrays.copyOf(leetcodeIds, count * 2);
+                slugs = Arrays.copyOf(slugs, count * 2);
+            }
+            difficulties[count] = (byte) difficultyOf.apply(question).ordinal();
+            offsets[count] = (int) written;
+            lengths[count] = blob.length;
+            leetcodeIds[count] = question.path("problem_id").asText();
+            slugs[count] = question.path("problem_slug").asText();
+            count++;
+            out.write(blob);
+            written += blob.length;
+        }
+
+        public int count() {
+            return count;
+        }
+
+        /**
+         * Write the index and move the finished file over the target, if any.
+         */
+        public void finish() throws IOException {
+            long indexOffset = written;
+            for (int i = 0; i < count; i++) {
+                out.writeByte(difficulties[i]);
+                out.writeInt(offsets[i]);
+                out.writeInt(lengths[i]);
+                writeString(leetcodeIds[i]);
+                writeString(slugs[i]);
+            }
+            out.writeLong(indexOffset);
+            out.writeInt(count);
+            out.close();
+            if (target != null) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            finished = true;
+        }
+
+        /**
+         * The finished catalog of a Builder without a target.
+         */
+        public ProblemCatalog catalog() throws IOException {
+            if (memory == null || !finished) {
+                throw new IllegalStateException("Only a finished in-memory catalog can be taken from its builder");
+            }
+            return read(ByteBuffer.wrap(memory.toByteArray()), objectMapper, "in-memory catalog");
+        }
+
+        private void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > 0xFFFF) {
+                throw new IOException("Problem id or slug too long: " + value.substring(0, 64));
+            }
+            out.writeShort(bytes.length);
+            out.write(bytes);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!finished) {
+                out.close();
+                if (temp != null) {
+                    Files.deleteIfExists(temp);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.codeduelz.codeduelz.services;
+
+import com.codeduelz.codeduelz.entities.Problem;
+import com.codeduelz.codeduelz.entities.TestCase;
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Seeds the problems and test_cases tables with every question of the problem
+ * catalog, so match creation only ever reads them.
+ *
+ * Rows are written with JDBC batch inserts, bypassing the per-entity saves of
+ * the lazy path. The import is idempotent on leetcodeId: problems that already
+ * exist are kept (only a missing method name and signature are filled in), and test cases
+ * are only added to problems that have none. leetcode_id is unique and
+ * problems are inserted with ON CONFLICT DO NOTHING, so a match loading the
+ * same problem during the import can't duplicate it. Test case inserts only
+ * re-check the table, which makes duplicates from such a race unlikely but
+ * not impossible; a duplicate example just runs twice.
+ */
+@Service
+@Slf4j
+public class ProblemImporter {
+
+    // Matches the length of TestCase.input and expectedOutput
+    private static final int MAX_TEST_CASE_LENGTH = 1000;
+
+    private static final String INSERT_PROBLEM = """
+            INSERT INTO problems (leetcode_id, title, problem_slug, difficulty, source, description, method_name,
+                method_signature)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT (leetcode_id) DO NOTHING""";
+
+    private static final String UPDATE_METHOD = """
+            UPDATE problems SET method_name = ?, method_signature = ?
+            WHERE problem_id = ? AND (method_signature IS NULL OR method_signature = '')""";
+
+    private static final String INSERT_TEST_CASE = """
+            INSERT INTO test_cases (problem_id, input, expected_output)
+            SELECT ?, ?, ?
+            WHERE NOT EXISTS (SELECT 1 FROM test_cases WHERE problem_id = ? AND input = ? AND expected_output = ?)""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LeetCodeProblemService leetCodeProblemService;
+    private final ProblemSnapshotCache problemSnapshotCache;
+    private final MatchPayloadCache matchPayloadCache;
+    private final int batchSize;
+
+    public record ImportResult(int problems, int problemsInserted, int testCasesInserted, int testCasesSkipped,
+            long elapsedMs) {
+    }
+
+    public ProblemImporter(JdbcTemplate jdbcTemplate, LeetCodeProblemService leetCodeProblemService,
+            ProblemSnapshotCache problemSnapshotCache, MatchPayloadCache matchPayloadCache,
+            @Value("${problems.import.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.leetCodeProblemService = leetCodeProblemService;
+        this.problemSnapshotCache = problemSnapshotCache;
+        this.matchPayloadCache = matchPayloadCache;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Upsert every catalog problem and its example test cases.
+     */
+    public ImportResult importAll() {
+        ProblemCatalog catalog = leetCodeProblemService.catalog();
+        if (catalog == null) {
+            log.warn("Problem import skipped: no problem catalog loaded");
+            return new ImportResult(0, 0, 0, 0, 0);
+        }
+        long started = System.currentTimeMillis();
+
+        // leetcodeId -> problemId and method signature of what is already there
+        Map<String, Long> problemIds = new HashMap<>();
+        Map<Long, String> methodSignatures = new HashMap<>();
+        jdbcTemplate.query("SELECT problem_id, leetcode_id, method_signature FROM problems "
+                + "WHERE leetcode_id IS NOT NULL", rs -> {
+                    problemIds.put(rs.getString(2), rs.getLong(1));
+                    methodSignatures.put(rs.getLong(1), rs.getString(3));
+                });
+        Set<Long> withTestCases = new HashSet<>(
+                jdbcTemplate.queryForList("SELECT DISTINCT problem_id FROM test_cases", Long.class));
+
+        int problemsInserted = 0;
+        List<Object[]> problemRows = new ArrayList<>();
+        List<Object[]> methodRows = new ArrayList<>();
+        for (int i = 0; i < catalog.size(); i++) {
+            Long problemId = problemIds.get(catalog.leetcodeId(i));
+            if (problemId != null && hasText(methodSignatures.get(problemId))) {
+                continue;
+            }
+            Problem problem = leetCodeProblemService.newProblem(catalog.question(i));
+            if (problemId != null) {
+                if (problem.getMethodSignature() != null) {
+                    methodRows.add(new Object[] { problem.getMethodName(), problem.getMethodSignature(), problemId });
+                }
+                continue;
+            }
+            problemRows.add(new Object[] { problem.getLeetcodeId(), problem.getTitle(), problem.getProblemSlug(),
+                    problem.getDifficulty().name(), problem.getSource(), problem.getDescription(),
+                    problem.getMethodName(), problem.getMethodSignature() });
+            if (problemRows.size() == batchSize) {
+                problemsInserted += insert(INSERT_PROBLEM, problemRows);
+            }
+        }
+        problemsInserted += insert(INSERT_PROBLEM, problemRows);
+        List<Long> updated = methodRows.stream().map(row -> (Long) row[2]).toList();
+        insert(UPDATE_METHOD, methodRows);
+        // Their snapshots hold harnesses generated without the signature
+        updated.forEach(problemSnapshotCache::invalidate);
+
+        // Pick up the generated IDs of the problems just inserted
+        if (problemsInserted > 0) {
+            problemIds.clear();
+            jdbcTemplate.query("SELECT problem_id, leetcode_id FROM problems WHERE leetcode_id IS NOT NULL",
+                    rs -> {
+                        problemIds.put(rs.getString(2), rs.getLong(1));
+                    });
+        }
+
+        int testCasesInserted = 0;
+        int testCasesSkipped = 0;
+        List<Object[]> testCaseRows = new ArrayList<>();
+        List<Long> imported = new ArrayList<>();
+        for (int i = 0; i < catalog.size(); i++) {
+            Long problemId = problemIds.get(catalog.leetcodeId(i));
+            if (problemId == null || withTestCases.contains(problemId)) {
+                continue;
+            }
+            JsonNode question = catalog.question(i);
+            for (TestCase testCase : leetCodeProblemService.exampleTestCases(null, question)) {
+                if (testCase.getInput().length() > MAX_TEST_CASE_LENGTH
+                        || testCase.getExpectedOutput().length() > MAX_TEST_CASE_LENGTH) {
+                    testCasesSkipped++;
+                    continue;
+                }
+                testCaseRows.add(new Object[] { problemId, testCase.getInput(), testCase.getExpectedOutput(),
+                        problemId, testCase.getInput(), testCase.getExpectedOutput() });
+            }
+            imported.add(problemId);
+            if (testCaseRows.size() >= batchSize) {
+                testCasesInserted += insert(INSERT_TEST_CASE, testCaseRows);
+            }
+        }
+        testCasesInserted += insert(INSERT_TEST_CASE, testCaseRows);
+        leetCodeProblemService.markSeeded(withTestCases);
+        leetCodeProblemService.markSeeded(imported);
+        // Anything cached for these problems was read before they had test cases
+        for (Long problemId : imported) {
+            problemSnapshotCache.invalidate(problemId);
+            matchPayloadCache.invalidateProblem(problemId);
+        }
+
+        ImportResult result = new ImportResult(catalog.size(), problemsInserted, testCasesInserted, testCasesSkipped,
+                System.currentTimeMillis() - started);
+        long elapsedMs = Math.max(1, result.elapsedMs());
+        log.info("Imported {} problems ({} new) and {} test cases ({} too long, skipped) in {} ms: "
+                + "{} problems/s, {} test cases/s", result.problems(), problemsInserted, testCasesInserted,
+                testCasesSkipped, result.elapsedMs(), result.problems() * 1000L / elapsedMs,
+                testCasesInserted * 1000L / elapsedMs);
+        return result;
+    }
+
+    // Runs the rows as one JDBC batch and clears them; returns rows changed
+    private int insert(String sql, List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        int changed = 0;
+        for (int count : jdbcTemplate.batchUpdate(sql, rows)) {
+            // Some drivers report SUCCESS_NO_INFO (-2) for batched statements
+            changed += count == -2 ? 1 : count;
+        }
+        rows.clear();
+        return changed;
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.isEmpty();
+    }
+}
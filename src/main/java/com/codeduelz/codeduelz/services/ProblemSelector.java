@@ -0,0 +1,163 @@
+package com.codeduelz.codeduelz.services;
+
+import com.codeduelz.codeduelz.entities.Difficulty;
+import com.codeduelz.codeduelz.repo.MatchRepo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks match problems that none of the players has played before.
+ *
+ * Each player's history is a bitset per difficulty over the positions of the
+ * catalog's questions, loaded from their matches on first use and updated as
+ * new matches are picked. A pick first probes a few random positions, which
+ * almost always lands on an unseen problem; only when the players have seen
+ * most of a difficulty does it fall back to scanning the combined bitsets for
+ * a clear bit. Once they have seen all of it, problems repeat.
+ *
+ * Histories of the least recently active players are dropped past
+ * problems.selection.history-max-users; they are reloaded from the database
+ * when needed. They are all dropped when a pick comes in for a different
+ * catalog than the one they were loaded against, e.g. after a rebuild.
+ */
+@Service
+public class ProblemSelector {
+
+    // Random positions tried before scanning for an unseen one
+    private static final int PROBES = 8;
+
+    private final MatchRepo matchRepo;
+    private final int maxUsers;
+
+    // userId -> problems played, least recently used evicted first
+    private final LinkedHashMap<Long, History> histories = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, History> eldest) {
+            return size() > maxUsers;
+        }
+    };
+    // The catalog whose positions the histories hold; guarded by histories
+    private ProblemCatalog historiesCatalog;
+
+    public ProblemSelector(MatchRepo matchRepo,
+            @Value("${problems.selection.history-max-users:10000}") int maxUsers) {
+        this.matchRepo = matchRepo;
+        this.maxUsers = maxUsers;
+    }
+
+    /**
+     * Pick a question of the difficulty, which must not be empty, and record
+     * it as played by every player. Returns its position within the
+     * difficulty, for ProblemCatalog.question(Difficulty, int).
+     */
+    public int pick(ProblemCatalog catalog, Difficulty difficulty, Long... playerIds) {
+        int size = catalog.size(difficulty);
+        int d = difficulty.ordinal();
+        History[] players = new History[playerIds.length];
+        for (int i = 0; i < playerIds.length; i++) {
+            players[i] = history(catalog, playerIds[i]);
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int position = -1;
+        for (int probe = 0; probe < PROBES && position < 0; probe++) {
+            int candidate = random.nextInt(size);
+            if (!playedByAny(players, d, candidate)) {
+                position = candidate;
+            }
+        }
+        if (position < 0) {
+            position = scan(players, d, size, random);
+        }
+
+        for (History player : players) {
+            player.mark(d, position);
+        }
+        return position;
+    }
+
+    private static boolean playedByAny(History[] players, int d, int position) {
+        for (History player : players) {
+            if (player.played(d, position)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // First unplayed position from a random start, wrapping around; any
+    // position if every one has been played
+    private static int scan(History[] players, int d, int size, ThreadLocalRandom random) {
+        BitSet played = new BitSet(size);
+        for (History player : players) {
+            player.addTo(d, played);
+        }
+        if (played.cardinality() >= size) {
+            return random.nextInt(size);
+        }
+        int position = played.nextClearBit(random.nextInt(size));
+        return position < size ? position : played.nextClearBit(0);
+    }
+
+    private History history(ProblemCatalog catalog, Long userId) {
+        synchronized (histories) {
+            forgetOtherCatalogs(catalog);
+            History cached = histories.get(userId);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        // Loaded outside the lock; if two picks race on a new player, the first stored wins
+        History loaded = new History();
+        for (String leetcodeId : matchRepo.findPlayedLeetcodeIds(userId)) {
+            int index = catalog.indexOf(leetcodeId);
+            if (index >= 0) {
+                loaded.mark(catalog.difficultyOf(index).ordinal(), catalog.positionOf(index));
+            }
+        }
+        synchronized (histories) {
+            if (historiesCatalog != catalog) {
+                // A pick on a newer catalog dropped the histories meanwhile; don't mix this one in
+                return loaded;
+            }
+            History existing = histories.putIfAbsent(userId, loaded);
+            return existing != null ? existing : loaded;
+        }
+    }
+
+    // Positions only mean something within one catalog, so a rebuilt catalog
+    // starts every history over. Call with the histories lock held.
+    private void forgetOtherCatalogs(ProblemCatalog catalog) {
+        if (historiesCatalog != catalog) {
+            histories.clear();
+            historiesCatalog = catalog;
+        }
+    }
+
+    private static final class History {
+        private final BitSet[] played = new BitSet[Difficulty.values().length];
+
+        synchronized boolean played(int d, int position) {
+            return played[d] != null && played[d].get(position);
+        }
+
+        synchronized void mark(int d, int position) {
+            if (played[d] == null) {
+                played[d] = new BitSet();
+            }
+            played[d].set(position);
+        }
+
+        synchronized void addTo(int d, BitSet target) {
+            if (played[d] != null) {
+                target.or(played[d]);
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.codeduelz.codeduelz.services;
+
+import com.codeduelz.codeduelz.entities.Problem;
+import com.codeduelz.codeduelz.entities.TestCase;
+import com.codeduelz.codeduelz.repo.TestCaseRepo;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache of each problem with its test cases, so judging a Run or
+ * Submit and starting a match don't query the test cases every time. A
+ * snapshot also holds the test harness generated for the problem's method
+ * signature and test cases when it was loaded, so judging only splices the
+ * solution in.
+ *
+ * Every problem has a version stamp. invalidate() bumps it and drops the
+ * snapshot; call it whenever a problem's test cases are added, edited or
+ * imported. A load that an invalidation raced past is returned but not kept.
+ * The version is part of the VerdictCache key, so verdicts judged against old
+ * test cases can't be returned either.
+ *
+ * Snapshots are shared by every caller: treat the problem and its test cases
+ * as read-only.
+ */
+@Service
+@RequiredArgsConstructor
+public class ProblemSnapshotCache {
+
+    private final TestCaseRepo testCaseRepo;
+    private final VerdictCache verdictCache;
+    private final CodeExecutionService codeExecutionService;
+
+    public record Snapshot(Problem problem, List<TestCase> testCases, long version,
+            CodeExecutionService.Harness harness) {
+    }
+
+    // problemId -> its snapshot
+    private final Map<Long, Snapshot> snapshots = new ConcurrentHashMap<>();
+    // problemId -> version stamp; problems never invalidated are at 0
+    private final Map<Long, Long> versions = new ConcurrentHashMap<>();
+    private final AtomicLong versionClock = new AtomicLong();
+
+    public Snapshot get(Problem problem) {
+        Long problemId = problem.getProblemId();
+        Snapshot cached = snapshots.get(problemId);
+        if (cached != null) {
+            return cached;
+        }
+
+        long version = version(problemId);
+        List<TestCase> testCases = List.copyOf(testCaseRepo.findByProblem(problem));
+        Snapshot loaded = new Snapshot(problem, testCases, version, codeExecutionService.prepareHarness(
+                problem.getMethodName(), problem.getMethodSignature(), testCases));
+        // Runs under the same lock as invalidate(), so a stale load is never stored
+        Snapshot stored = snapshots.compute(problemId, (id, current) -> {
+            if (current != null) {
+                return current;
+            }
+            return version(id) == version ? loaded : null;
+        });
+        return stored != null ? stored : loaded;
+    }
+
+    public List<TestCase> testCases(Problem problem) {
+        return get(problem).testCases();
+    }
+
+    /**
+     * Forget a problem's snapshot and the verdicts judged against it, e.g.
+     * after its test cases changed.
+     */
+    public void invalidate(Long problemId) {
+        snapshots.compute(problemId, (id, current) -> {
+            versions.put(id, versionClock.incrementAndGet());
+            return null;
+        });
+        verdictCache.invalidateProblem(problemId);
+    }
+
+    public long version(Long problemId) {
+        return versions.getOrDefault(problemId, 0L);
+    }
+}
@@ -0,0 +1,285 @@
+package com.codeduelz.codeduelz.services;
+
+import com.codeduelz.codeduelz.entities.Profile;
+import com.codeduelz.codeduelz.repo.MatchRepo;
+import com.codeduelz.codeduelz.repo.ProfileRepo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Rating changes for finished matches, shared by every match completion path.
+ *
+ * rating.engine=elo (default) uses expected-score Elo with rating.elo.k-factor.
+ * rating.engine=glicko uses the Glicko-2 update for a single game with a fixed
+ * volatility; each player's rating deviation is stored on their profile, so
+ * new or inactive players move faster than established ones. A match with no
+ * winner (a timeout) costs both players rating.timeout-penalty points; an
+ * abandoned match changes nothing.
+ *
+ * rebuildRatings() recomputes every rating and win/loss count from match
+ * history in one streaming pass, and rewrites the rating changes recorded on
+ * the matches to match.
+ */
+@Service
+@Slf4j
+public class RatingEngine {
+
+    public static final int INITIAL_RATING = 1000;
+    public static final double INITIAL_DEVIATION = 350;
+
+    // Glicko-2 works on a scale where 173.7178 rating points are 1 unit
+    private static final double GLICKO_SCALE = 173.7178;
+
+    // A whole batch of rewrites in one statement, passed as arrays and joined back onto matches
+    private static final String UPDATE_RATING_CHANGES = "UPDATE matches m "
+            + "SET player1rating_change = c.player1, player2rating_change = c.player2 "
+            + "FROM unnest(?, ?, ?) AS c(match_id, player1, player2) WHERE m.match_id = c.match_id";
+
+    public record Result(int player1Change, int player2Change, Double player1Deviation, Double player2Deviation) {
+    }
+
+    /**
+     * A player's rating while replaying history.
+     */
+    public static final class PlayerRating {
+        private int rating = INITIAL_RATING;
+        private double deviation = INITIAL_DEVIATION;
+        private int wins;
+        private int losses;
+
+        public int getRating() {
+            return rating;
+        }
+
+        public double getDeviation() {
+            return deviation;
+        }
+
+        public int getWins() {
+            return wins;
+        }
+
+        public int getLosses() {
+            return losses;
+        }
+    }
+
+    private final MatchRepo matchRepo;
+    private final ProfileRepo profileRepo;
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean glicko;
+    private final double kFactor;
+    private final double volatility;
+    private final int timeoutPenalty;
+    private final int rebuildBatchSize;
+
+    public RatingEngine(MatchRepo matchRepo, ProfileRepo profileRepo, JdbcTemplate jdbcTemplate,
+            @Value("${rating.engine:elo}") String engine,
+            @Value("${rating.elo.k-factor:32}") double kFactor,
+            @Value("${rating.glicko.volatility:0.06}") double volatility,
+            @Value("${rating.timeout-penalty:10}") int timeoutPenalty,
+            @Value("${rating.rebuild.batch-size:1000}") int rebuildBatchSize) {
+        this.matchRepo = matchRepo;
+        this.profileRepo = profileRepo;
+        this.jdbcTemplate = jdbcTemplate;
+        this.glicko = "glicko".equalsIgnoreCase(engine);
+        this.kFactor = kFactor;
+        this.volatility = volatility;
+        this.timeoutPenalty = timeoutPenalty;
+        this.rebuildBatchSize = rebuildBatchSize;
+    }
+
+    /**
+     * Rating changes for a match between two players; winnerIsPlayer1 says who
+     * won. Missing profiles count as new players.
+     */
+    public Result rate(Profile player1, Profile player2, boolean winnerIsPlayer1) {
+        return rate(ratingOf(player1), deviationOf(player1), ratingOf(player2), deviationOf(player2),
+                winnerIsPlayer1 ? 1 : 0);
+    }
+
+    /**
+     * Rating changes when the match ended without a winner.
+     */
+    public Result timeout(Profile player1, Profile player2) {
+        return new Result(-timeoutPenalty, -timeoutPenalty,
+                glicko ? deviationOf(player1) : null, glicko ? deviationOf(player2) : null);
+    }
+
+    /**
+     * Apply a result's rating and deviation change to a profile.
+     */
+    public void apply(Profile profile, int change, Double deviation) {
+        profile.setRating(ratingOf(profile) + change);
+        if (deviation != null) {
+            profile.setRatingDeviation(deviation);
+        }
+    }
+
+    /**
+     * Recompute every profile's rating (and deviation), wins, losses and
+     * match count from scratch by replaying all completed matches in the
+     * order they ended. Only IDs, winners and recorded changes are streamed
+     * from the database; the replay itself runs in memory. In the same pass,
+     * each match whose recorded rating changes differ from the replayed ones
+     * is rewritten, rating.rebuild.batch-size matches per statement, so match
+     * history shows the changes the current engine would have made. Returns
+     * the number of matches replayed.
+     */
+    @Transactional
+    public long rebuildRatings() {
+        long started = System.currentTimeMillis();
+        Map<Long, PlayerRating> ratings = new HashMap<>();
+        // Matches replayed, and those of them whose recorded changes were rewritten
+        long[] replayed = { 0, 0 };
+        // matchId, player1 change, player2 change of rewrites not yet written
+        List<Object[]> rewrites = new ArrayList<>();
+        try (Stream<Object[]> history = matchRepo.streamCompletedResults()) {
+            history.forEach(row -> {
+                Result result = replay(ratings, (Long) row[1], (Long) row[2], (Long) row[3], (Boolean) row[6]);
+                replayed[0]++;
+                if (!Objects.equals(row[4], result.player1Change()) || !Objects.equals(row[5], result.player2Change())) {
+                    rewrites.add(new Object[] { row[0], result.player1Change(), result.player2Change() });
+                    replayed[1]++;
+                    if (rewrites.size() == rebuildBatchSize) {
+                        writeRatingChanges(rewrites);
+                    }
+                }
+            });
+        }
+        writeRatingChanges(rewrites);
+
+        List<Profile> profiles = profileRepo.findAll();
+        for (Profile profile : profiles) {
+            PlayerRating rating = ratings.getOrDefault(profile.getUser().getUserId(), new PlayerRating());
+            profile.setRating(rating.rating);
+            profile.setRatingDeviation(glicko && rating.wins + rating.losses > 0 ? rating.deviation : null);
+            profile.setWins(rating.wins);
+            profile.setLosses(rating.losses);
+            profile.setTotalMatches(rating.wins + rating.losses);
+        }
+        profileRepo.saveAll(profiles);
+        log.info("Rebuilt {} ratings from {} matches ({} rating changes rewritten) in {} ms", profiles.size(),
+                replayed[0], replayed[1], System.currentTimeMillis() - started);
+        return replayed[0];
+    }
+
+    /**
+     * Write rewritten rating changes, each a (matchId, player1 change,
+     * player2 change) row, in one UPDATE, and clear them.
+     */
+    void writeRatingChanges(List<Object[]> rewrites) {
+        if (rewrites.isEmpty()) {
+            return;
+        }
+        Object[][] columns = new Object[3][rewrites.size()];
+        for (int i = 0; i < rewrites.size(); i++) {
+            for (int column = 0; column < 3; column++) {
+                columns[column][i] = rewrites.get(i)[column];
+            }
+        }
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(UPDATE_RATING_CHANGES);
+            statement.setArray(1, connection.createArrayOf("bigint", columns[0]));
+            statement.setArray(2, connection.createArrayOf("integer", columns[1]));
+            statement.setArray(3, connection.createArrayOf("integer", columns[2]));
+            return statement;
+        });
+        rewrites.clear();
+    }
+
+    /**
+     * Replay a completed match that may have been abandoned. An abandoned
+     * match leaves the replay state alone and had no rating changes.
+     */
+    public Result replay(Map<Long, PlayerRating> ratings, Long player1Id, Long player2Id, Long winnerId,
+            boolean abandoned) {
+        if (abandoned) {
+            return new Result(0, 0, null, null);
+        }
+        return replay(ratings, player1Id, player2Id, winnerId);
+    }
+
+    /**
+     * Apply one finished match to the replay state and return its rating
+     * changes. winnerId is null for a timeout.
+     */
+    public Result replay(Map<Long, PlayerRating> ratings, Long player1Id, Long player2Id, Long winnerId) {
+        PlayerRating p1 = ratings.computeIfAbsent(player1Id, k -> new PlayerRating());
+        PlayerRating p2 = ratings.computeIfAbsent(player2Id, k -> new PlayerRating());
+        if (winnerId == null) {
+            p1.rating -= timeoutPenalty;
+            p2.rating -= timeoutPenalty;
+            p1.losses++;
+            p2.losses++;
+            return new Result(-timeoutPenalty, -timeoutPenalty, null, null);
+        }
+        boolean player1Won = winnerId.equals(player1Id);
+        Result result = rate(p1.rating, p1.deviation, p2.rating, p2.deviation, player1Won ? 1 : 0);
+        if (player1Won) {
+            p1.wins++;
+            p2.losses++;
+        } else {
+            p2.wins++;
+            p1.losses++;
+        }
+        p1.rating += result.player1Change();
+        p2.rating += result.player2Change();
+        if (glicko) {
+            p1.deviation = result.player1Deviation();
+            p2.deviation = result.player2Deviation();
+        }
+        return result;
+    }
+
+    private Result rate(int rating1, double deviation1, int rating2, double deviation2, double score1) {
+        if (glicko) {
+            double[] p1 = glickoUpdate(rating1, deviation1, rating2, deviation2, score1);
+            double[] p2 = glickoUpdate(rating2, deviation2, rating1, deviation1, 1 - score1);
+            return new Result((int) Math.round(p1[0] - rating1), (int) Math.round(p2[0] - rating2), p1[1], p2[1]);
+        }
+        double expected1 = 1 / (1 + Math.pow(10, (rating2 - rating1) / 400.0));
+        int change1 = (int) Math.round(kFactor * (score1 - expected1));
+        return new Result(change1, -change1, null, null);
+    }
+
+    // Glicko-2 step 3-7 for a rating period with a single game and fixed volatility.
+    // Returns the new rating and deviation.
+    private double[] glickoUpdate(double rating, double deviation, double opponentRating, double opponentDeviation,
+            double score) {
+        double mu = rating / GLICKO_SCALE;
+        double phi = deviation / GLICKO_SCALE;
+        double opponentMu = opponentRating / GLICKO_SCALE;
+        double opponentPhi = opponentDeviation / GLICKO_SCALE;
+
+        double g = 1 / Math.sqrt(1 + 3 * opponentPhi * opponentPhi / (Math.PI * Math.PI));
+        double expected = 1 / (1 + Math.exp(-g * (mu - opponentMu)));
+        double variance = 1 / (g * g * expected * (1 - expected));
+
+        double preRatingPhi = Math.sqrt(phi * phi + volatility * volatility);
+        double newPhi = 1 / Math.sqrt(1 / (preRatingPhi * preRatingPhi) + 1 / variance);
+        double newMu = mu + newPhi * newPhi * g * (score - expected);
+        return new double[] { newMu * GLICKO_SCALE, Math.min(INITIAL_DEVIATION, newPhi * GLICKO_SCALE) };
+    }
+
+    private static int ratingOf(Profile profile) {
+        return profile == null || profile.getRating() == null ? INITIAL_RATING : profile.getRating();
+    }
+
+    private static double deviationOf(Profile profile) {
+        return profile == null || profile.getRatingDeviation() == null
+                ? INITIAL_DEVIATION
+                : profile.getRatingDeviation();
+    }
+}
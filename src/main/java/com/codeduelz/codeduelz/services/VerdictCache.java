@@ -0,0 +1,168 @@
+package com.codeduelz.codeduelz.services;
+
+import com.codeduelz.codeduelz.dtos.CodeExecutionResultDto;
+import com.codeduelz.codeduelz.dtos.TestCaseResultDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Remembers the verdict for identical (code, language, problem, test case
+ * version) submissions, so a double-click or a reconnect retry doesn't judge
+ * the same code again. Concurrent identical requests share a single evaluation.
+ * A caller served a verdict it didn't evaluate itself gets that verdict's
+ * per-test-case results replayed to its listener, and every caller gets its
+ * own copy of the result.
+ *
+ * The test case version comes from ProblemSnapshotCache and is part of the
+ * key, so editing a problem's test cases makes old verdicts unreachable;
+ * invalidateProblem() drops them eagerly.
+ */
+@Service
+public class VerdictCache {
+
+    // Only verdicts that depend purely on the code are cached. Runtime errors
+    // and timeouts may come from the execution backend itself.
+    private static final Set<String> CACHEABLE_STATUSES = Set.of("ACCEPTED", "WRONG_ANSWER", "COMPILATION_ERROR");
+
+    @Value("${judge.verdict-cache.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    @Value("${judge.verdict-cache.max-entries:10000}")
+    private int maxEntries;
+
+    // key -> verdict, in access order so the least recently used entry is evicted first
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            return size() > maxEntries;
+        }
+    };
+    private final Map<Key, CompletableFuture<CodeExecutionResultDto>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Return the remembered verdict for this submission, or run the evaluator and
+     * remember its result. The evaluator reports per-test-case progress to the
+     * listener it is given, which is this listener; if the verdict comes from
+     * the cache or another caller's evaluation instead, its per-test-case
+     * results are replayed to the listener in order. The listener may be null.
+     */
+    public CodeExecutionResultDto getOrEvaluate(Long problemId, long testCaseVersion, String code,
+            String language, CodeExecutionService.TestCaseListener listener,
+            Function<CodeExecutionService.TestCaseListener, CodeExecutionResultDto> evaluator) {
+        Key key = new Key(problemId, testCaseVersion, digest(code, language));
+
+        CodeExecutionResultDto cached = lookup(key);
+        if (cached != null) {
+            return replay(cached, listener);
+        }
+
+        CompletableFuture<CodeExecutionResultDto> pending = new CompletableFuture<>();
+        CompletableFuture<CodeExecutionResultDto> existing = inFlight.putIfAbsent(key, pending);
+        if (existing != null) {
+            return replay(existing.join(), listener);
+        }
+
+        try {
+            CodeExecutionResultDto result = evaluator.apply(listener);
+            // The copy kept and shared is never handed out itself, so no caller can change it
+            CodeExecutionResultDto shared = copy(result);
+            if (shared != null && CACHEABLE_STATUSES.contains(shared.getStatus())) {
+                synchronized (entries) {
+                    entries.put(key, new Entry(shared, System.currentTimeMillis() + ttlSeconds * 1000));
+                }
+            }
+            pending.complete(shared);
+            return result;
+        } catch (RuntimeException e) {
+            pending.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key);
+        }
+    }
+
+    /**
+     * Drop every remembered verdict for a problem, e.g. after its test cases changed.
+     */
+    public void invalidateProblem(Long problemId) {
+        synchronized (entries) {
+            entries.keySet().removeIf(k -> Objects.equals(k.problemId(), problemId));
+        }
+    }
+
+    private CodeExecutionResultDto lookup(Key key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAtMs() < System.currentTimeMillis()) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.result();
+        }
+    }
+
+    // A copy of a verdict this caller didn't evaluate, its per-test-case
+    // results passed to the listener first as if they had been judged
+    private static CodeExecutionResultDto replay(CodeExecutionResultDto shared,
+            CodeExecutionService.TestCaseListener listener) {
+        CodeExecutionResultDto result = copy(shared);
+        if (result != null && listener != null && result.getTestCaseResults() != null) {
+            List<TestCaseResultDto> results = result.getTestCaseResults();
+            for (int index = 0; index < results.size(); index++) {
+                listener.onResult(index, results.get(index));
+            }
+        }
+        return result;
+    }
+
+    private static CodeExecutionResultDto copy(CodeExecutionResultDto result) {
+        if (result == null) {
+            return null;
+        }
+        List<TestCaseResultDto> testCaseResults = result.getTestCaseResults() == null ? null
+                : result.getTestCaseResults().stream()
+                        .map(r -> new TestCaseResultDto(r.getInput(), r.getExpectedOutput(), r.getActualOutput(),
+                                r.isPassed()))
+                        .toList();
+        return new CodeExecutionResultDto(result.getStatus(), testCaseResults, result.getCompilationError(),
+                result.getTotalPassed(), result.getTotalTests());
+    }
+
+    private String digest(String code, String language) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            update(digest, String.valueOf(language));
+            update(digest, String.valueOf(code));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private record Key(Long problemId, long testCaseVersion, String digest) {
+    }
+
+    private record Entry(CodeExecutionResultDto result, long expiresAtMs) {
+    }
+}
@@ -0,0 +1,31 @@
+package com.codeduelz.codeduelz.ServiceImpl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JdoodleExecutionBackendTests {
+
+    @Test
+    void compilerDiagnosticsAreCompilationErrors() {
+        assertTrue(JdoodleExecutionBackend.isCompilationError(
+                "Main.java:5: error: ';' expected\n1 error", "java"));
+        assertTrue(JdoodleExecutionBackend.isCompilationError(
+                "jdoodle.cpp:3:10: fatal error: foo.h: No such file or directory\ncompilation terminated.", "cpp"));
+        assertTrue(JdoodleExecutionBackend.isCompilationError(
+                "  File \"jdoodle.py\", line 1\n    def f(:\n          ^\nSyntaxError: invalid syntax", "python"));
+    }
+
+    @Test
+    void runtimeMessagesMentioningErrorAreNot() {
+        assertFalse(JdoodleExecutionBackend.isCompilationError(
+                "<<<CDZ_CASE_END>>>\n<<<CDZ_RUNTIME_ERROR>>>java.lang.IllegalArgumentException: error: bad input",
+                "java"));
+        assertFalse(JdoodleExecutionBackend.isCompilationError(
+                "Exception in thread \"main\" java.lang.RuntimeException: Error: parse error: x\n"
+                        + "\tat Solution.solve(Main.java:12)", "java"));
+        assertFalse(JdoodleExecutionBackend.isCompilationError(
+                "Traceback (most recent call last):\nValueError: error: SyntaxError: not really", "python"));
+    }
+}
@@ -0,0 +1,90 @@
+package com.codeduelz.codeduelz.ServiceImpl;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Times Java executions on the local backend, end to end, with and without
+ * warm JVMs: a new program that has to be compiled, and one whose classes
+ * are cached so it only runs. Unsandboxed, since bwrap isn't assumed to be
+ * installed; the sandbox adds its own start-up to every process either way.
+ * Executions are spaced out so the standbys are ready, as on a worker that
+ * isn't saturated. Skipped by default; run with
+ * mvn test -Dtest=LocalExecutionBackendBenchmarkTests -Dbenchmarks=true
+ */
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class LocalExecutionBackendBenchmarkTests {
+
+    private static final int ROUNDS = 10;
+    private static final long SPACING_MS = 5000;
+
+    // Shaped like the judge's batch harness: a Solution plus a Main printing each case
+    private static final String PROGRAM = """
+            import java.util.*;
+            class Solution {
+                public int[] twoSum(int[] nums, int target) {
+                    Map<Integer, Integer> seen = new HashMap<>();
+                    for (int i = 0; i < nums.length; i++) {
+                        Integer j = seen.get(target - nums[i]);
+                        if (j != null) {
+                            return new int[] { j, i };
+                        }
+                        seen.put(nums[i], i);
+                    }
+                    return new int[0];
+                }
+            }
+            public class Main {
+                public static void main(String[] args) {
+                    Scanner in = new Scanner(System.in);
+                    int target = in.nextInt() + %d;
+                    System.out.println(Arrays.toString(new Solution().twoSum(new int[] { 2, 7, 11, 15 }, target)));
+                    System.out.println("<<<CDZ_CASE_END>>>");
+                }
+            }
+            """;
+
+    @Test
+    void javaLatency() throws Exception {
+        for (boolean warm : new boolean[] { false, true }) {
+            LocalExecutionBackend backend = LocalExecutionBackendTests.backend(warm);
+            try {
+                Thread.sleep(SPACING_MS);
+                long[] compiled = new long[ROUNDS];
+                long[] cached = new long[ROUNDS];
+                for (int i = 0; i < ROUNDS; i++) {
+                    // A different program every round, so nothing comes from the artifact cache
+                    compiled[i] = timed(backend, PROGRAM.formatted(i), 9 - i);
+                    Thread.sleep(SPACING_MS);
+                    cached[i] = timed(backend, PROGRAM.formatted(0), 9);
+                    Thread.sleep(SPACING_MS);
+                }
+                System.out.printf("warm JVMs %s: compile and run median %d ms, cached run median %d ms%n",
+                        warm ? "on" : "off", median(compiled), median(cached));
+            } finally {
+                backend.shutdown();
+            }
+        }
+    }
+
+    private static long timed(LocalExecutionBackend backend, String program, int input) {
+        long started = System.nanoTime();
+        Map<String, Object> result = backend.execute(program, "java", input + "\n");
+        long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+        assertEquals("[0, 1]\n<<<CDZ_CASE_END>>>\n", result.get("stdout"));
+        return elapsedMs;
+    }
+
+    private static long median(long[] samples) {
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
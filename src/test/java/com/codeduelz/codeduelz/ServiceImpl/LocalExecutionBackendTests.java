@@ -0,0 +1,74 @@
+package com.codeduelz.codeduelz.ServiceImpl;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs Java through the local backend without the sandbox (bwrap isn't
+ * assumed to be installed), on standby JVMs and on cold ones alike.
+ */
+class LocalExecutionBackendTests {
+
+    private static final String ECHO_SUM = """
+            import java.io.*;
+            public class Main {
+                public static void main(String[] args) throws IOException {
+                    BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+                    int a = Integer.parseInt(in.readLine().trim());
+                    int b = Integer.parseInt(in.readLine().trim());
+                    System.out.println(a + b);
+                }
+            }
+            """;
+
+    @Test
+    void warmJvmsJudgeLikeColdOnes() throws Exception {
+        for (boolean warm : new boolean[] { true, false }) {
+            LocalExecutionBackend backend = backend(warm);
+            try {
+                Map<String, Object> run = backend.execute(ECHO_SUM, "java", "2\n40\n");
+                assertEquals("42\n", run.get("stdout"), "warm=" + warm);
+                assertEquals(0, run.get("exitCode"));
+                // Compiled once; the second run restores the class and only runs it
+                assertEquals("7\n", backend.execute(ECHO_SUM, "java", "3\n4\n").get("stdout"));
+
+                Map<String, Object> broken = backend.execute("public class Main { void f() { int x = } }",
+                        "java", "");
+                assertEquals(true, broken.get("compilationError"));
+                assertTrue(((String) broken.get("stderr")).contains("error"));
+
+                Map<String, Object> thrown = backend.execute("public class Main { public static void "
+                        + "main(String[] args) { throw new IllegalStateException(\"boom\"); } }", "java", "");
+                assertEquals(1, thrown.get("exitCode"));
+                assertTrue(((String) thrown.get("stderr"))
+                        .contains("Exception in thread \"main\" java.lang.IllegalStateException: boom"));
+            } finally {
+                backend.shutdown();
+            }
+        }
+    }
+
+    static LocalExecutionBackend backend(boolean warmJvms) throws Exception {
+        LocalExecutionBackend backend = new LocalExecutionBackend();
+        ReflectionTestUtils.setField(backend, "workers", 1);
+        ReflectionTestUtils.setField(backend, "cpuSeconds", 10);
+        ReflectionTestUtils.setField(backend, "memoryMb", 256);
+        ReflectionTestUtils.setField(backend, "wallClockSeconds", 30);
+        ReflectionTestUtils.setField(backend, "compileTimeoutSeconds", 60);
+        ReflectionTestUtils.setField(backend, "maxOutputBytes", 65536);
+        ReflectionTestUtils.setField(backend, "sandbox", "none");
+        ReflectionTestUtils.setField(backend, "allowUnsandboxed", true);
+        ReflectionTestUtils.setField(backend, "maxProcesses", 128);
+        // The JDK running the tests, which also has javac
+        ReflectionTestUtils.setField(backend, "path", System.getProperty("java.home") + "/bin:/usr/bin:/bin");
+        ReflectionTestUtils.setField(backend, "artifactCacheMb", 16L);
+        ReflectionTestUtils.setField(backend, "warmJvms", warmJvms);
+        backend.init();
+        return backend;
+    }
+}
@@ -0,0 +1,189 @@
+package com.codeduelz.codeduelz.ServiceImpl;
+
+import com.codeduelz.codeduelz.services.MatchmakingQueue;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MatchmakingQueuesTests {
+
+    private static final String[] DIFFICULTIES = { "EASY", "MEDIUM", "HARD" };
+
+    @Test
+    void concurrentJoinersAreNeitherLostNorPairedTwice() throws Exception {
+        int threads = 16;
+        int usersPerThread = 250;
+        // Equal ratings, so any two players in the same pool can be paired
+        MatchmakingQueues queues = new MatchmakingQueues(0, 0, 0);
+
+        Map<String, AtomicInteger> timesPaired = new ConcurrentHashMap<>();
+        Map<String, String> lastAction = new ConcurrentHashMap<>();
+        List<String> errors = Collections.synchronizedList(new ArrayList<>());
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> joiners = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int threadIndex = t;
+            Thread joiner = new Thread(() -> {
+                Random random = new Random(threadIndex);
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                // Each user is driven by one thread, so their last action is well defined.
+                // Actions are spread over rounds so they interleave with matching.
+                for (int round = 0; round < 5; round++) {
+                    for (int u = 0; u < usersPerThread; u++) {
+                        String username = "user-" + threadIndex + "-" + u;
+                        if (random.nextInt(4) == 0) {
+                            queues.leave(username);
+                            lastAction.put(username, "leave");
+                        } else {
+                            String difficulty = DIFFICULTIES[random.nextInt(DIFFICULTIES.length)];
+                            queues.join(username, difficulty, 1000);
+                            lastAction.put(username, difficulty);
+                        }
+                    }
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+            joiner.start();
+            joiners.add(joiner);
+        }
+
+        AtomicBoolean joining = new AtomicBoolean(true);
+        Thread matcher = new Thread(() -> {
+            while (joining.get()) {
+                queues.match(System.currentTimeMillis(),
+                        (difficulty, pair) -> record(difficulty, pair, timesPaired, errors));
+            }
+        });
+        matcher.start();
+
+        start.countDown();
+        for (Thread joiner : joiners) {
+            joiner.join();
+        }
+        joining.set(false);
+        matcher.join();
+        // Apply whatever was still pending; the matcher has stopped, so this is the only writer
+        queues.match(System.currentTimeMillis(),
+                (difficulty, pair) -> record(difficulty, pair, timesPaired, errors));
+
+        assertTrue(errors.isEmpty(), () -> String.join("\n", errors));
+        for (Map.Entry<String, String> entry : lastAction.entrySet()) {
+            String username = entry.getKey();
+            AtomicInteger paired = timesPaired.get(username);
+            assertTrue(paired == null || paired.get() == 1, username + " was paired more than once");
+            if (paired == null) {
+                // Never paired: still waiting exactly when their last action was a join
+                assertEquals(!"leave".equals(entry.getValue()), queues.isWaiting(username),
+                        username + " ended in the wrong state after " + entry.getValue());
+            } else {
+                assertFalse(queues.isWaiting(username), username + " is waiting although already paired");
+            }
+        }
+        for (String difficulty : DIFFICULTIES) {
+            assertTrue(queues.size(difficulty) <= 1, difficulty + " still has pairable players waiting");
+        }
+    }
+
+    @Test
+    void pairedPlayersQueueAgainOnlyAfterRelease() {
+        MatchmakingQueues queues = new MatchmakingQueues(0, 0, 0);
+        List<MatchmakingQueue.Pair> pairs = new ArrayList<>();
+        queues.join("alice", "EASY", 1000);
+        queues.join("bob", "EASY", 1000);
+        queues.match(System.currentTimeMillis(), (difficulty, pair) -> pairs.add(pair));
+        assertEquals(1, pairs.size());
+
+        // Rejoining while the match is being created is ignored
+        queues.join("alice", "MEDIUM", 1000);
+        queues.match(System.currentTimeMillis(), (difficulty, pair) -> pairs.add(pair));
+        assertFalse(queues.isWaiting("alice"));
+
+        queues.release("alice");
+        MatchmakingQueue.Pair first = pairs.get(0);
+        queues.requeue("EASY", first.first().username().equals("bob") ? first.first() : first.second());
+        queues.join("alice", "EASY", 1000);
+        queues.match(System.currentTimeMillis(), (difficulty, pair) -> pairs.add(pair));
+        assertEquals(2, pairs.size());
+    }
+
+    /**
+     * Times joins, duplicate joins and leaves against pools already holding
+     * growing numbers of waiting players; the time per operation should stay
+     * about flat. The commands are applied without a pairing pass, which
+     * scans the pools and is not what is measured; ratings are spread far
+     * apart so nobody is paired anyway. Skipped by default; run with
+     * mvn test -Dtest=MatchmakingQueuesTests -Dbenchmarks=true
+     */
+    @Test
+    @Tag("benchmark")
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    void queueOperationsStayFlatAsQueuesGrow() {
+        int operations = 20_000;
+        for (int waiting : new int[] { 1_000, 10_000, 100_000, 1_000_000 }) {
+            MatchmakingQueues queues = new MatchmakingQueues(0, 0, 0);
+            for (int i = 0; i < waiting; i++) {
+                queues.join("waiting-" + i, DIFFICULTIES[i % DIFFICULTIES.length], i * 10);
+            }
+            queues.match(0, (difficulty, pair) -> {
+                throw new AssertionError("nobody should be paired");
+            });
+
+            for (int round = 0; round < 3; round++) {
+                long started = System.nanoTime();
+                for (int i = 0; i < operations; i++) {
+                    queues.join("joiner-" + i, DIFFICULTIES[i % DIFFICULTIES.length], -10 - i * 10);
+                    // Already waiting for that difficulty, so ignored
+                    int w = i % waiting;
+                    queues.join("waiting-" + w, DIFFICULTIES[w % DIFFICULTIES.length], w * 10);
+                }
+                ReflectionTestUtils.invokeMethod(queues, "applyPending");
+                for (int i = 0; i < operations; i++) {
+                    queues.leave("joiner-" + i);
+                }
+                ReflectionTestUtils.invokeMethod(queues, "applyPending");
+                long elapsedNs = System.nanoTime() - started;
+                System.out.printf("%d waiting: %d joins, duplicate joins and leaves in %d ms, %d ns each%n",
+                        waiting, operations, elapsedNs / 1_000_000, elapsedNs / (3L * operations));
+                assertEquals(waiting, queues.size("EASY") + queues.size("MEDIUM") + queues.size("HARD"));
+            }
+        }
+    }
+
+    private static void record(String difficulty, MatchmakingQueue.Pair pair,
+            Map<String, AtomicInteger> timesPaired, List<String> errors) {
+        String first = pair.first().username();
+        String second = pair.second().username();
+        if (first.equals(second)) {
+            errors.add(first + " was paired with themselves in " + difficulty);
+        }
+        for (String username : List.of(first, second)) {
+            if (timesPaired.computeIfAbsent(username, k -> new AtomicInteger()).incrementAndGet() > 1) {
+                errors.add(username + " was paired again in " + difficulty);
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.codeduelz.codeduelz.ServiceImpl;
+
+import com.codeduelz.codeduelz.services.MatchmakingQueue;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Testcontainers(disabledWithoutDocker = true)
+class RedisMatchmakingQueueTests {
+
+    @Container
+    private static final GenericContainer<?> REDIS = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redis;
+
+    @BeforeAll
+    static void connect() {
+        connectionFactory = new LettuceConnectionFactory(REDIS.getHost(), REDIS.getMappedPort(6379));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redis = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void disconnect() {
+        connectionFactory.destroy();
+    }
+
+    @BeforeEach
+    void flush() {
+        redis.execute((RedisCallback<Object>) connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        });
+    }
+
+    @Test
+    void joinMatchAndLeave() {
+        RedisMatchmakingQueue queue = queue();
+        queue.join("alice", "easy", 1000);
+        queue.join("bob", "EASY", 1020);
+        queue.join("carol", "EASY", 1500);
+        queue.join("dave", "MEDIUM", 1000);
+        assertEquals(3, queue.size("EASY"));
+
+        queue.leave("carol");
+        assertFalse(queue.isWaiting("carol"));
+        assertEquals(2, queue.size("EASY"));
+
+        List<String> paired = new ArrayList<>();
+        queue.match(System.currentTimeMillis(), (difficulty, pair) -> {
+            assertEquals("EASY", difficulty);
+            paired.add(pair.first().username());
+            paired.add(pair.second().username());
+        });
+        Collections.sort(paired);
+        assertEquals(List.of("alice", "bob"), paired);
+        assertTrue(queue.isWaiting("dave"));
+        assertEquals(0, queue.size("EASY"));
+
+        // Claimed until released
+        queue.join("alice", "EASY", 1000);
+        assertFalse(queue.isWaiting("alice"));
+        queue.release("alice");
+        queue.join("alice", "EASY", 1000);
+        assertTrue(queue.isWaiting("alice"));
+
+        // Joining another difficulty moves the player
+        queue.join("alice", "HARD", 1000);
+        assertEquals(0, queue.size("EASY"));
+        assertEquals(1, queue.size("HARD"));
+    }
+
+    @Test
+    void twoNodesMatchingOnePoolPairEveryPlayerOnce() throws Exception {
+        RedisMatchmakingQueue[] nodes = { queue(), queue() };
+        int players = 400;
+        for (int i = 0; i < players; i++) {
+            nodes[i % 2].join("user-" + i, "MEDIUM", 1000 + i % 7);
+        }
+
+        Map<String, AtomicInteger> timesPaired = new ConcurrentHashMap<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> matchers = new ArrayList<>();
+        for (MatchmakingQueue node : nodes) {
+            Thread matcher = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (node.size("MEDIUM") > 1) {
+                    node.match(System.currentTimeMillis(), (difficulty, pair) -> {
+                        timesPaired.computeIfAbsent(pair.first().username(), u -> new AtomicInteger()).incrementAndGet();
+                        timesPaired.computeIfAbsent(pair.second().username(), u -> new AtomicInteger()).incrementAndGet();
+                    });
+                }
+            });
+            matcher.start();
+            matchers.add(matcher);
+        }
+        start.countDown();
+        for (Thread matcher : matchers) {
+            matcher.join();
+        }
+
+        assertEquals(players, timesPaired.size());
+        timesPaired.forEach((username, times) -> assertEquals(1, times.get(), username));
+    }
+
+    private static RedisMatchmakingQueue queue() {
+        RedisMatchmakingQueue queue = new RedisMatchmakingQueue(redis);
+        ReflectionTestUtils.setField(queue, "initialWindow", 50);
+        ReflectionTestUtils.setField(queue, "windowGrowthPerSecond", 10);
+        ReflectionTestUtils.setField(queue, "maxWindow", 400);
+        ReflectionTestUtils.setField(queue, "claimTtlMs", 60000L);
+        ReflectionTestUtils.setField(queue, "scanLimit", 500);
+        return queue;
+    }
+}
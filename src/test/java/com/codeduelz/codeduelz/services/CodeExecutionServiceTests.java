@@ -0,0 +1,101 @@
+package com.codeduelz.codeduelz.services;
+
+import com.codeduelz.codeduelz.entities.TestCase;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CodeExecutionServiceTests {
+
+    private static final String SOLUTION = "class Solution {\n    int twoSum(int a) { return a; }\n}";
+    // Solution on lines 4-6, harness below it
+    private static final String SCRIPT = "import java.util.*;\nimport java.util.Arrays;\n\n" + SOLUTION
+            + "\n\npublic class Main {\n    static Object runCase0() { return new Solution().twoSum(\"x\"); }\n}\n";
+
+    @Test
+    void harnessCompileErrorsAreNotBlamedOnTheSolution() {
+        assertFalse(CodeExecutionService.compileErrorInSolution(
+                "Main.java:9: error: incompatible types: String cannot be converted to int", SCRIPT, SOLUTION));
+        assertFalse(CodeExecutionService.compileErrorInSolution(
+                "main.cpp:9:41: error: no matching function for call", SCRIPT, SOLUTION));
+        // Nothing to locate the error by, e.g. a runtime message; judged case by case instead
+        assertFalse(CodeExecutionService.compileErrorInSolution(
+                "Exception in thread \"main\" java.lang.IllegalStateException: error: bad input", SCRIPT, SOLUTION));
+    }
+
+    @Test
+    void solutionCompileErrorsAreTheSolutions() {
+        assertTrue(CodeExecutionService.compileErrorInSolution(
+                "Main.java:5: error: ';' expected\nMain.java:9: error: cannot find symbol", SCRIPT, SOLUTION));
+        assertTrue(CodeExecutionService.compileErrorInSolution("main.cpp:4:1: fatal error: oops", SCRIPT, SOLUTION));
+    }
+
+    @Test
+    void backendFailuresAreNotGradedAsRuntimeErrors() {
+        ExecutionBackend busy = (sourceCode, language, stdin) -> Map.of("error", "No execution worker available",
+                "stdout", "", "stderr", "No execution worker available", "exitCode", -1);
+        CodeExecutionService service = new CodeExecutionService(busy, new ExecutionTracer());
+        service.init();
+        try {
+            assertEquals(CodeExecutionService.VERDICT_INTERNAL_ERROR, service.evaluateAgainstTestCases(
+                    "print(input())", "python", List.of(testCase("1", "1"), testCase("2", "2"))).getStatus());
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void preparedHarnessesWrapSolutionsLikeTheirOwnSignatures() {
+        List<TestCase> testCases = List.of(testCase("nums = [2,7,11,15], target = 9", "[0,1]"),
+                testCase("nums = [3,2,4], target = 6", "[1,2]"));
+        CodeExecutionService.Harness prepared = new CodeExecutionService(null, new ExecutionTracer())
+                .prepareHarness("twoSum", "public int[] twoSum(int[] nums, int target)", testCases);
+        String matching = "class Solution {\n    public int[] twoSum(int[] nums, int target) { return null; }\n}";
+        String different = "class Solution {\n    public int[] twoSum(int[] nums, long target) { return null; }\n}";
+
+        for (boolean batched : new boolean[] { true, false }) {
+            for (String solution : List.of(matching, different)) {
+                List<String> fromSnapshot = scriptsRun(batched,
+                        service -> service.evaluateAgainstTestCases(solution, "java", testCases, prepared, null));
+                List<String> generated = scriptsRun(batched,
+                        service -> service.evaluateAgainstTestCases(solution, "java", testCases, "twoSum", null));
+                assertEquals(generated, fromSnapshot);
+            }
+        }
+        assertTrue(prepared.javaBatchMain().contains("int arg1 = 9;"));
+        assertEquals(2, prepared.cppCaseMains().size());
+    }
+
+    // Every program the service sends to the backend while judging
+    private static List<String> scriptsRun(boolean batched, Consumer<CodeExecutionService> judge) {
+        List<String> scripts = new ArrayList<>();
+        ExecutionBackend backend = (sourceCode, language, stdin) -> {
+            scripts.add(sourceCode);
+            return Map.of("stdout", "", "stderr", "", "exitCode", 0);
+        };
+        CodeExecutionService service = new CodeExecutionService(backend, new ExecutionTracer());
+        ReflectionTestUtils.setField(service, "batchEnabled", batched);
+        service.init();
+        try {
+            judge.accept(service);
+        } finally {
+            service.shutdown();
+        }
+        return scripts;
+    }
+
+    private static TestCase testCase(String input, String expectedOutput) {
+        TestCase testCase = new TestCase();
+        testCase.setInput(input);
+        testCase.setExpectedOutput(expectedOutput);
+        return testCase;
+    }
+}
@@ -0,0 +1,52 @@
+package com.codeduelz.codeduelz.services;
+
+import com.codeduelz.codeduelz.entities.Match;
+import com.codeduelz.codeduelz.repo.MatchRepo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MatchClockTests {
+
+    // No ongoing matches to rebuild
+    private final MatchRepo repo = (MatchRepo) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[] { MatchRepo.class }, (proxy, method, args) -> new ArrayList<>());
+
+    private final MatchClock clock = new MatchClock(repo, null);
+
+    @AfterEach
+    void tearDown() {
+        clock.stop();
+    }
+
+    @Test
+    void expiredDeadlinesDoNotStayBehind() throws InterruptedException {
+        int matches = 2000;
+        CountDownLatch fired = new CountDownLatch(matches);
+        ReflectionTestUtils.setField(clock, "staleGraceSeconds", 300L);
+        ReflectionTestUtils.setField(clock, "zone", "");
+        ReflectionTestUtils.setField(clock, "resyncSeconds", 0L);
+        clock.start(matchId -> fired.countDown());
+
+        // Already past their deadline, so each fires as soon as it is scheduled
+        for (long matchId = 1; matchId <= matches; matchId++) {
+            Match match = new Match();
+            match.setMatchId(matchId);
+            match.setStartTime(LocalDateTime.now().minusMinutes(1));
+            match.setTimeLimitSeconds(1);
+            clock.schedule(match);
+        }
+
+        assertTrue(fired.await(10, TimeUnit.SECONDS));
+        assertEquals(0, clock.activeMatches());
+    }
+}
@@ -0,0 +1,73 @@
+package com.codeduelz.codeduelz.services;
+
+import com.codeduelz.codeduelz.entities.Problem;
+import com.codeduelz.codeduelz.repo.TestCaseRepo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MatchPayloadCacheTests {
+
+    private final TestCaseRepo repo = (TestCaseRepo) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[] { TestCaseRepo.class }, (proxy, method, args) -> new ArrayList<>());
+
+    private final ProblemSnapshotCache snapshots = new ProblemSnapshotCache(repo, new VerdictCache(),
+            new CodeExecutionService(null, new ExecutionTracer()));
+    private final MatchPayloadCache cache = new MatchPayloadCache(snapshots);
+    private int builds;
+    private Runnable duringBuild = () -> {
+    };
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(cache, "maxEntries", 10);
+    }
+
+    @Test
+    void buildsOnceUntilTheSnapshotIsInvalidated() {
+        Problem problem = problem(3L);
+        cache.problemPayload(problem, this::details);
+        cache.problemPayload(problem, this::details);
+        assertEquals(1, builds);
+
+        // Not through invalidateProblem(): a snapshot invalidation alone retires the payload
+        snapshots.invalidate(3L);
+        cache.problemPayload(problem, this::details);
+        assertEquals(2, builds);
+    }
+
+    @Test
+    void doesNotKeepAPayloadThatAnInvalidationRacedPast() {
+        Problem problem = problem(5L);
+        duringBuild = () -> {
+            snapshots.invalidate(5L);
+            cache.invalidateProblem(5L);
+        };
+        cache.problemPayload(problem, this::details);
+
+        duringBuild = () -> {
+        };
+        cache.problemPayload(problem, this::details);
+        cache.problemPayload(problem, this::details);
+        assertEquals(2, builds);
+    }
+
+    private Map<String, Object> details() {
+        builds++;
+        duringBuild.run();
+        return Map.of();
+    }
+
+    private static Problem problem(Long id) {
+        Problem problem = new Problem();
+        problem.setProblemId(id);
+        problem.setTitle("Problem " + id);
+        return problem;
+    }
+}
@@ -0,0 +1,107 @@
+package com.codeduelz.codeduelz.services;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OutputComparatorTests {
+
+    // The regex normalization OutputComparator.matches() replaces
+    private static String legacyNormalize(String output) {
+        return output
+                .replaceAll("\\r\\n", "\n")
+                .replaceAll(",\\s+", ",")
+                .replaceAll("\\[\\s+", "[")
+                .replaceAll("\\s+\\]", "]")
+                .replaceAll("\\s+$", "")
+                .trim();
+    }
+
+    @Test
+    void matchesIgnoresSpacingInsideLists() {
+        assertTrue(OutputComparator.matches("[1,2,3]", "[1, 2, 3]"));
+        assertFalse(OutputComparator.matches("[1,2,3]", "[1 ,2,3]"));
+        assertTrue(OutputComparator.matches("a\nb", "  a\r\nb \n"));
+        assertFalse(OutputComparator.matches("a b", "a  b"));
+    }
+
+    @Test
+    void matchesAgreesWithLegacyNormalization() {
+        char[] alphabet = { ' ', '\n', '\r', '\t', '\f', ',', '[', ']', 'a', '1', '\u0001' };
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            String expected = randomOutput(random, alphabet);
+            String actual = random.nextBoolean() ? legacyNormalize(expected) : randomOutput(random, alphabet);
+            assertEquals(legacyNormalize(expected).equals(legacyNormalize(actual)),
+                    OutputComparator.matches(expected, actual),
+                    () -> "expected=" + expected.replace("\r", "\\r") + " actual=" + actual.replace("\r", "\\r"));
+        }
+    }
+
+    @Test
+    void matchesTokensComparesNumbersWithinTolerance() {
+        assertTrue(OutputComparator.matchesTokens("[0.1, 0.2]\n3", "[0.1000000001,0.2] 3", 1e-6));
+        assertTrue(OutputComparator.matchesTokens("1000000", "1000000.5", 1e-6));
+        assertFalse(OutputComparator.matchesTokens("1.5", "1.6", 1e-6));
+        assertFalse(OutputComparator.matchesTokens("a b", "a b c", 1e-6));
+        assertFalse(OutputComparator.matchesTokens("true", "false", 1e-6));
+    }
+
+    /**
+     * Times matches(), and matchesTokens() on strings and on readers, against
+     * the legacy normalization on a large list output. Skipped by default; run
+     * with mvn test -Dtest=OutputComparatorTests -Dbenchmarks=true
+     */
+    @Test
+    @Tag("benchmark")
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    void compareLargeOutputs() throws IOException {
+        int values = 200_000;
+        StringBuilder expectedBuilder = new StringBuilder("[");
+        StringBuilder actualBuilder = new StringBuilder("[ ");
+        Random random = new Random(42);
+        for (int i = 0; i < values; i++) {
+            String value = String.valueOf(random.nextInt(1_000_000));
+            expectedBuilder.append(i == 0 ? "" : ",").append(value);
+            actualBuilder.append(i == 0 ? "" : ", ").append(value);
+        }
+        String expected = expectedBuilder.append("]\n").toString();
+        String actual = actualBuilder.append(" ]\r\n").toString();
+
+        for (int round = 0; round < 5; round++) {
+            long started = System.nanoTime();
+            boolean legacy = legacyNormalize(expected).equals(legacyNormalize(actual));
+            long legacyMs = (System.nanoTime() - started) / 1_000_000;
+            started = System.nanoTime();
+            boolean matched = OutputComparator.matches(expected, actual);
+            long matchesMs = (System.nanoTime() - started) / 1_000_000;
+            started = System.nanoTime();
+            boolean tokens = OutputComparator.matchesTokens(expected, actual, 1e-6);
+            long tokensMs = (System.nanoTime() - started) / 1_000_000;
+            started = System.nanoTime();
+            boolean streamed = OutputComparator.matchesTokens(new StringReader(expected), new StringReader(actual),
+                    1e-6);
+            long streamedMs = (System.nanoTime() - started) / 1_000_000;
+            System.out.printf("%d chars: legacy %d ms, matches %d ms, matchesTokens %d ms (reader %d ms)%n",
+                    actual.length(), legacyMs, matchesMs, tokensMs, streamedMs);
+            assertTrue(legacy && matched && tokens && streamed);
+        }
+    }
+
+    private static String randomOutput(Random random, char[] alphabet) {
+        int length = random.nextInt(10);
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet[random.nextInt(alphabet.length)]);
+        }
+        return sb.toString();
+    }
+}
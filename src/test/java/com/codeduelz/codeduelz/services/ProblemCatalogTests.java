@@ -0,0 +1,100 @@
+package com.codeduelz.codeduelz.services;
+
+import com.codeduelz.codeduelz.entities.Difficulty;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProblemCatalogTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void questionsReadBackByDifficulty() throws IOException {
+        ArrayNode questions = objectMapper.createArrayNode();
+        String[] difficulties = { "Easy", "Hard", "Medium", "Hard", "Easy" };
+        for (int i = 0; i < difficulties.length; i++) {
+            questions.addObject()
+                    .put("problem_id", String.valueOf(i))
+                    .put("problem_slug", "problem-" + i)
+                    .put("title", "Problem " + i + " – ünïcödé")
+                    .put("difficulty", difficulties[i])
+                    .putArray("constraints").add("1 <= n <= " + i);
+        }
+
+        Path file = dir.resolve("problems.catalog");
+        try (ProblemCatalog.Builder builder = new ProblemCatalog.Builder(file, objectMapper,
+                q -> Difficulty.valueOf(q.get("difficulty").asText().toUpperCase()))) {
+            questions.forEach(q -> {
+                try {
+                    builder.add(q);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            builder.finish();
+        }
+
+        ProblemCatalog catalog = ProblemCatalog.open(file, objectMapper);
+        assertEquals(5, catalog.size());
+        assertEquals(2, catalog.size(Difficulty.EASY));
+        assertEquals(1, catalog.size(Difficulty.MEDIUM));
+        assertEquals(2, catalog.size(Difficulty.HARD));
+        for (int i = 0; i < questions.size(); i++) {
+            assertEquals(questions.get(i), catalog.question(i));
+        }
+        JsonNode secondHard = catalog.question(Difficulty.HARD, 1);
+        assertEquals("3", secondHard.get("problem_id").asText());
+        assertEquals("3", catalog.leetcodeId(3));
+        assertEquals("problem-4", catalog.slug(4));
+    }
+
+    @Test
+    void unfinishedBuildLeavesNoFile() throws IOException {
+        Path file = dir.resolve("problems.catalog");
+        try (ProblemCatalog.Builder builder = new ProblemCatalog.Builder(file, objectMapper, q -> Difficulty.EASY)) {
+            builder.add(objectMapper.createObjectNode().put("problem_id", "1"));
+        }
+        assertFalse(Files.exists(file));
+        try (var leftovers = Files.list(dir)) {
+            assertEquals(0L, leftovers.count());
+        }
+    }
+
+    @Test
+    void buildsInMemoryWithoutATarget() throws IOException {
+        ProblemCatalog catalog;
+        try (ProblemCatalog.Builder builder = new ProblemCatalog.Builder(objectMapper, q -> Difficulty.MEDIUM)) {
+            builder.add(objectMapper.createObjectNode().put("problem_id", "1").put("problem_slug", "two-sum"));
+            builder.add(objectMapper.createObjectNode().put("problem_id", "2"));
+            builder.finish();
+            catalog = builder.catalog();
+        }
+        assertTrue(catalog.inMemory());
+        assertEquals(0L, catalog.mappedBytes());
+        assertEquals(2, catalog.size(Difficulty.MEDIUM));
+        assertEquals("two-sum", catalog.question(Difficulty.MEDIUM, 0).get("problem_slug").asText());
+        assertEquals(1, catalog.indexOf("2"));
+    }
+
+    @Test
+    void rejectsFilesThatAreNotCatalogs() throws IOException {
+        Path file = dir.resolve("problems.catalog");
+        Files.writeString(file, "{\"questions\": []}");
+        assertThrows(IOException.class, () -> ProblemCatalog.open(file, objectMapper));
+    }
+}
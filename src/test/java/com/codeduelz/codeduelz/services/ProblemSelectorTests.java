@@ -0,0 +1,103 @@
+package com.codeduelz.codeduelz.services;
+
+import com.codeduelz.codeduelz.entities.Difficulty;
+import com.codeduelz.codeduelz.repo.MatchRepo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProblemSelectorTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path dir;
+
+    // userId -> LeetCode ids of problems they played before
+    private final Map<Long, List<String>> played = Map.of(
+            1L, List.of("0", "1", "2", "3", "4"),
+            2L, List.of("4", "5", "6", "7", "8", "9"));
+
+    private final MatchRepo matchRepo = (MatchRepo) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[] { MatchRepo.class }, (proxy, method, args) -> {
+                if (!method.getName().equals("findPlayedLeetcodeIds")) {
+                    throw new UnsupportedOperationException(method.getName());
+                }
+                return played.getOrDefault((Long) args[0], List.of());
+            });
+
+    @Test
+    void picksUnplayedProblemsUntilTheDifficultyRunsOut() throws IOException {
+        ProblemCatalog catalog = catalog(40);
+        ProblemSelector selector = new ProblemSelector(matchRepo, 100);
+
+        Set<String> picked = new HashSet<>();
+        for (int i = 0; i < 30; i++) {
+            int position = selector.pick(catalog, Difficulty.MEDIUM, 1L, 2L);
+            String leetcodeId = catalog.question(Difficulty.MEDIUM, position).get("problem_id").asText();
+            assertTrue(Integer.parseInt(leetcodeId) >= 10, "played before: " + leetcodeId);
+            assertTrue(picked.add(leetcodeId), "picked twice: " + leetcodeId);
+        }
+
+        // Both players have now seen all 40; problems repeat instead of failing
+        int position = selector.pick(catalog, Difficulty.MEDIUM, 1L, 2L);
+        assertTrue(position >= 0 && position < 40);
+    }
+
+    @Test
+    void onlyTheOtherPlayersHistoryLimitsANewPlayer() throws IOException {
+        ProblemCatalog catalog = catalog(12);
+        ProblemSelector selector = new ProblemSelector(matchRepo, 100);
+
+        Set<Integer> positions = new HashSet<>();
+        for (int i = 0; i < 7; i++) {
+            positions.add(selector.pick(catalog, Difficulty.MEDIUM, 1L, 3L));
+        }
+        assertEquals(7, positions.size());
+        for (int playedBy1 = 0; playedBy1 < 5; playedBy1++) {
+            assertFalse(positions.contains(playedBy1));
+        }
+    }
+
+    @Test
+    void aRebuiltCatalogReloadsHistoriesAtItsOwnPositions() throws IOException {
+        ProblemSelector selector = new ProblemSelector(matchRepo, 100);
+        selector.pick(catalog(12), Difficulty.MEDIUM, 1L, 3L);
+
+        // Same questions in reverse, so player 1's problems 0-4 sit at positions 7-11
+        ProblemCatalog rebuilt = catalog(12, true);
+        Set<Integer> positions = new HashSet<>();
+        for (int i = 0; i < 7; i++) {
+            positions.add(selector.pick(rebuilt, Difficulty.MEDIUM, 1L, 3L));
+        }
+        assertEquals(Set.of(0, 1, 2, 3, 4, 5, 6), positions);
+    }
+
+    private ProblemCatalog catalog(int questions) throws IOException {
+        return catalog(questions, false);
+    }
+
+    private ProblemCatalog catalog(int questions, boolean reversed) throws IOException {
+        Path file = dir.resolve(reversed ? "reversed.catalog" : "problems.catalog");
+        try (ProblemCatalog.Builder builder = new ProblemCatalog.Builder(file, objectMapper, q -> Difficulty.MEDIUM)) {
+            for (int i = 0; i < questions; i++) {
+                int id = reversed ? questions - 1 - i : i;
+                builder.add(objectMapper.createObjectNode().put("problem_id", String.valueOf(id)));
+            }
+            builder.finish();
+        }
+        return ProblemCatalog.open(file, objectMapper);
+    }
+}
@@ -0,0 +1,79 @@
+package com.codeduelz.codeduelz.services;
+
+import com.codeduelz.codeduelz.entities.Problem;
+import com.codeduelz.codeduelz.entities.TestCase;
+import com.codeduelz.codeduelz.repo.TestCaseRepo;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ProblemSnapshotCacheTests {
+
+    private final List<TestCase> stored = new ArrayList<>();
+    private int loads;
+    private Runnable duringLoad = () -> {
+    };
+
+    private final TestCaseRepo repo = (TestCaseRepo) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[] { TestCaseRepo.class }, (proxy, method, args) -> {
+                if (!method.getName().equals("findByProblem")) {
+                    throw new UnsupportedOperationException(method.getName());
+                }
+                loads++;
+                duringLoad.run();
+                return new ArrayList<>(stored);
+            });
+
+    private final ProblemSnapshotCache cache = new ProblemSnapshotCache(repo, new VerdictCache(),
+            new CodeExecutionService(null, new ExecutionTracer()));
+
+    @Test
+    void readsThroughOnceUntilInvalidated() {
+        Problem problem = problem(7L);
+        stored.add(testCase("1", "2"));
+
+        ProblemSnapshotCache.Snapshot first = cache.get(problem);
+        assertSame(first, cache.get(problem));
+        assertEquals(1, loads);
+        assertEquals(1, first.testCases().size());
+
+        stored.add(testCase("3", "4"));
+        cache.invalidate(7L);
+        ProblemSnapshotCache.Snapshot second = cache.get(problem);
+        assertEquals(2, loads);
+        assertEquals(2, second.testCases().size());
+        assertNotEquals(first.version(), second.version());
+    }
+
+    @Test
+    void doesNotKeepALoadThatAnInvalidationRacedPast() {
+        Problem problem = problem(9L);
+        duringLoad = () -> cache.invalidate(9L);
+        cache.get(problem);
+
+        duringLoad = () -> {
+        };
+        cache.get(problem);
+        cache.get(problem);
+        assertEquals(2, loads);
+    }
+
+    private static Problem problem(Long id) {
+        Problem problem = new Problem();
+        problem.setProblemId(id);
+        return problem;
+    }
+
+    private static TestCase testCase(String input, String expectedOutput) {
+        TestCase testCase = new TestCase();
+        testCase.setInput(input);
+        testCase.setExpectedOutput(expectedOutput);
+        return testCase;
+    }
+}
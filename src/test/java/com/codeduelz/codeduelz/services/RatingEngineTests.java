@@ -0,0 +1,93 @@
+package com.codeduelz.codeduelz.services;
+
+import com.codeduelz.codeduelz.entities.Profile;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RatingEngineTests {
+
+    private final RatingEngine elo = new RatingEngine(null, null, null, "elo", 32, 0.06, 10, 1000);
+    private final RatingEngine glicko = new RatingEngine(null, null, null, "glicko", 32, 0.06, 10, 1000);
+
+    @Test
+    void eloIsZeroSumAndRewardsUpsets() {
+        RatingEngine.Result even = elo.rate(profile(1000, null), profile(1000, null), true);
+        assertEquals(16, even.player1Change());
+        assertEquals(-16, even.player2Change());
+        assertNull(even.player1Deviation());
+
+        RatingEngine.Result favouriteWins = elo.rate(profile(1400, null), profile(1000, null), true);
+        RatingEngine.Result underdogWins = elo.rate(profile(1400, null), profile(1000, null), false);
+        assertEquals(3, favouriteWins.player1Change());
+        assertEquals(29, underdogWins.player2Change());
+        assertEquals(0, underdogWins.player1Change() + underdogWins.player2Change());
+    }
+
+    @Test
+    void glickoMovesUncertainPlayersMore() {
+        RatingEngine.Result result = glicko.rate(profile(1000, null), profile(1000, 50.0), true);
+        assertTrue(result.player1Change() > -result.player2Change(), "new player should gain more than veteran loses");
+        assertTrue(result.player1Deviation() < RatingEngine.INITIAL_DEVIATION);
+        assertTrue(result.player2Deviation() < RatingEngine.INITIAL_DEVIATION);
+    }
+
+    @Test
+    void replayMatchesLiveRating() {
+        for (RatingEngine engine : new RatingEngine[] { elo, glicko }) {
+            Random random = new Random(7);
+            Map<Long, Profile> live = new HashMap<>();
+            Map<Long, RatingEngine.PlayerRating> replayed = new HashMap<>();
+            for (int i = 0; i < 5000; i++) {
+                long a = random.nextInt(50);
+                long b = (a + 1 + random.nextInt(49)) % 50;
+                Long winner = random.nextInt(10) == 0 ? null : random.nextBoolean() ? a : b;
+
+                Profile pa = live.computeIfAbsent(a, k -> profile(RatingEngine.INITIAL_RATING, null));
+                Profile pb = live.computeIfAbsent(b, k -> profile(RatingEngine.INITIAL_RATING, null));
+                RatingEngine.Result result = winner == null
+                        ? engine.timeout(pa, pb)
+                        : engine.rate(pa, pb, winner == a);
+                engine.apply(pa, result.player1Change(), result.player1Deviation());
+                engine.apply(pb, result.player2Change(), result.player2Deviation());
+
+                engine.replay(replayed, a, b, winner);
+            }
+            live.forEach((id, profile) -> assertEquals((int) profile.getRating(), replayed.get(id).getRating(),
+                    "rating of player " + id));
+        }
+    }
+
+    @Test
+    void abandonedMatchesReplayAsNoChange() {
+        Map<Long, RatingEngine.PlayerRating> ratings = new HashMap<>();
+        elo.replay(ratings, 1L, 2L, 1L);
+
+        RatingEngine.Result abandoned = elo.replay(ratings, 1L, 2L, null, true);
+        assertEquals(0, abandoned.player1Change());
+        assertEquals(0, abandoned.player2Change());
+        assertEquals(1016, ratings.get(1L).getRating());
+        assertEquals(984, ratings.get(2L).getRating());
+
+        // The same match without the flag is a timeout
+        RatingEngine.Result timedOut = elo.replay(ratings, 1L, 2L, null, false);
+        assertEquals(-10, timedOut.player1Change());
+        assertEquals(1006, ratings.get(1L).getRating());
+        assertEquals(1, ratings.get(1L).getWins());
+        assertEquals(1, ratings.get(1L).getLosses());
+        assertEquals(2, ratings.get(2L).getLosses());
+    }
+
+    private static Profile profile(int rating, Double deviation) {
+        Profile profile = new Profile();
+        profile.setRating(rating);
+        profile.setRatingDeviation(deviation);
+        return profile;
+    }
+}
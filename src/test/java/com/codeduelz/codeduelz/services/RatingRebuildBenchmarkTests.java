@@ -0,0 +1,106 @@
+package com.codeduelz.codeduelz.services;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Times the database side of RatingEngine.rebuildRatings() on a real
+ * Postgres: streaming a large match history in end order, replaying it and
+ * writing every rating change back 1000 matches per UPDATE, as on a full
+ * rewrite. One UPDATE per match, as before batching, is timed on a sample for
+ * comparison.
+ * The history is read with plain JDBC rather than through MatchRepo, so JPA
+ * overhead is not included. Skipped by default and without Docker; run with
+ * mvn test -Dtest=RatingRebuildBenchmarkTests -Dbenchmarks=true
+ */
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+@Testcontainers(disabledWithoutDocker = true)
+class RatingRebuildBenchmarkTests {
+
+    private static final int PLAYERS = 20_000;
+    private static final int MATCHES = 1_000_000;
+    private static final int UNBATCHED_SAMPLE = 20_000;
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @Test
+    void rebuildMillionMatches() throws SQLException {
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(POSTGRES.getJdbcUrl(),
+                POSTGRES.getUsername(), POSTGRES.getPassword(), true);
+        // A cursor, so the history streams instead of being read in one go
+        dataSource.setAutoCommit(false);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setFetchSize(1000);
+        createHistory(jdbcTemplate);
+        dataSource.getConnection().commit();
+
+        RatingEngine engine = new RatingEngine(null, null, jdbcTemplate, "elo", 32, 0.06, 10, 1000);
+        long started = System.nanoTime();
+        Map<Long, RatingEngine.PlayerRating> ratings = new HashMap<>();
+        List<Object[]> rewrites = new ArrayList<>();
+        long[] rewritten = { 0 };
+        jdbcTemplate.query("SELECT match_id, player1_id, player2_id, winner_id, player1rating_change, "
+                + "player2rating_change, abandoned FROM matches ORDER BY end_time, match_id", rs -> {
+                    Long winnerId = rs.getObject(4, Long.class);
+                    RatingEngine.Result result = engine.replay(ratings, rs.getLong(2), rs.getLong(3), winnerId,
+                            rs.getBoolean(7));
+                    if (rs.getInt(5) != result.player1Change() || rs.getInt(6) != result.player2Change()) {
+                        rewrites.add(new Object[] { rs.getLong(1), result.player1Change(), result.player2Change() });
+                        rewritten[0]++;
+                        if (rewrites.size() == 1000) {
+                            engine.writeRatingChanges(rewrites);
+                        }
+                    }
+                });
+        engine.writeRatingChanges(rewrites);
+        dataSource.getConnection().commit();
+        long batchedMs = (System.nanoTime() - started) / 1_000_000;
+        System.out.printf("streamed and replayed %d matches, rewrote %d in batched updates in %d ms%n", MATCHES,
+                rewritten[0], batchedMs);
+        assertEquals(PLAYERS, ratings.size());
+        assertEquals(MATCHES / 10, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM matches WHERE winner_id IS NULL AND player1rating_change = -10", Long.class));
+
+        started = System.nanoTime();
+        for (long matchId = 1; matchId <= UNBATCHED_SAMPLE; matchId++) {
+            jdbcTemplate.update("UPDATE matches SET player1rating_change = ?, player2rating_change = ? "
+                    + "WHERE match_id = ?", 1, -1, matchId);
+        }
+        dataSource.getConnection().commit();
+        long unbatchedMs = (System.nanoTime() - started) / 1_000_000;
+        System.out.printf("one UPDATE per match: %d matches in %d ms, about %d ms per %d%n", UNBATCHED_SAMPLE,
+                unbatchedMs, unbatchedMs * (MATCHES / UNBATCHED_SAMPLE), MATCHES);
+        dataSource.destroy();
+    }
+
+    // The columns of matches that a rebuild reads and writes; every tenth
+    // match is a timeout and no recorded change is right, so all are rewritten
+    private static void createHistory(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.execute("CREATE TABLE matches (match_id bigint PRIMARY KEY, player1_id bigint NOT NULL, "
+                + "player2_id bigint NOT NULL, winner_id bigint, end_time timestamp, "
+                + "player1rating_change integer, player2rating_change integer, "
+                + "abandoned boolean NOT NULL DEFAULT false)");
+        jdbcTemplate.update("INSERT INTO matches (match_id, player1_id, player2_id, winner_id, end_time, "
+                + "player1rating_change, player2rating_change) "
+                + "SELECT i, p1, p2, CASE WHEN i % 10 = 0 THEN NULL WHEN i % 3 = 0 THEN p1 ELSE p2 END, "
+                + "timestamp '2025-01-01' + i * interval '1 second', 0, 0 "
+                + "FROM (SELECT i, i % ? AS p1, (i % ? + 1 + (i * 7919) % (? - 1)) % ? AS p2 "
+                + "FROM generate_series(1::bigint, ?) AS i) AS history", PLAYERS, PLAYERS, PLAYERS, PLAYERS, MATCHES);
+    }
+}
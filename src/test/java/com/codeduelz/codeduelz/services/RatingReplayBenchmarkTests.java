@@ -0,0 +1,56 @@
+package com.codeduelz.codeduelz.services;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Times the in-memory part of RatingEngine.rebuildRatings(): replaying a
+ * large match history. Skipped by default; run with
+ * mvn test -Dtest=RatingReplayBenchmarkTests -Dbenchmarks=true
+ */
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class RatingReplayBenchmarkTests {
+
+    private static final int PLAYERS = 20_000;
+    private static final int MATCHES = 1_000_000;
+    private static final int ROUNDS = 5;
+
+    @Test
+    void replayMillionMatches() {
+        for (String engineName : new String[] { "elo", "glicko" }) {
+            RatingEngine engine = new RatingEngine(null, null, null, engineName, 32, 0.06, 10, 1000);
+            long[][] history = history(new Random(42));
+            for (int round = 0; round < ROUNDS; round++) {
+                long started = System.nanoTime();
+                Map<Long, RatingEngine.PlayerRating> ratings = new HashMap<>();
+                for (long[] match : history) {
+                    engine.replay(ratings, match[0], match[1], match[2] < 0 ? null : match[2]);
+                }
+                long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+                System.out.printf("%s: replayed %d matches between %d players in %d ms%n", engineName, MATCHES,
+                        ratings.size(), elapsedMs);
+                assertEquals(PLAYERS, ratings.size());
+            }
+        }
+    }
+
+    // player1, player2, winner (-1 for a timeout)
+    private static long[][] history(Random random) {
+        long[][] history = new long[MATCHES][];
+        for (int i = 0; i < MATCHES; i++) {
+            long a = i < PLAYERS ? i : random.nextInt(PLAYERS);
+            long b = (a + 1 + random.nextInt(PLAYERS - 1)) % PLAYERS;
+            long winner = random.nextInt(10) == 0 ? -1 : random.nextBoolean() ? a : b;
+            history[i] = new long[] { a, b, winner };
+        }
+        return history;
+    }
+}
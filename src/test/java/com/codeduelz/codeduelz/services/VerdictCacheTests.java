@@ -0,0 +1,103 @@
+package com.codeduelz.codeduelz.services;
+
+import com.codeduelz.codeduelz.dtos.CodeExecutionResultDto;
+import com.codeduelz.codeduelz.dtos.TestCaseResultDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+class VerdictCacheTests {
+
+    private final VerdictCache cache = new VerdictCache();
+    private final AtomicInteger evaluations = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 600L);
+        ReflectionTestUtils.setField(cache, "maxEntries", 10);
+    }
+
+    @Test
+    void cachedVerdictsAreReplayedToTheListenerAndCopied() {
+        List<String> live = new ArrayList<>();
+        CodeExecutionResultDto first = cache.getOrEvaluate(1L, 0, "code", "java",
+                (index, result) -> live.add(index + ":" + result.getActualOutput()), this::judge);
+        assertEquals(List.of("0:1", "1:2"), live);
+
+        List<String> replayed = new ArrayList<>();
+        CodeExecutionResultDto second = cache.getOrEvaluate(1L, 0, "code", "java",
+                (index, result) -> replayed.add(index + ":" + result.getActualOutput()), this::judge);
+        assertEquals(1, evaluations.get());
+        assertEquals(live, replayed);
+        assertNotSame(first, second);
+
+        // Changing one caller's result leaves what the next caller gets alone
+        first.setStatus("CHANGED");
+        second.getTestCaseResults().get(0).setActualOutput("changed");
+        CodeExecutionResultDto third = cache.getOrEvaluate(1L, 0, "code", "java", null, this::judge);
+        assertEquals("WRONG_ANSWER", third.getStatus());
+        assertEquals("1", third.getTestCaseResults().get(0).getActualOutput());
+    }
+
+    @Test
+    void callersSharingAnEvaluationGetItsResultsReplayed() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        // Not cacheable, so the waiter can only be served by the in-flight evaluation
+        Thread leader = new Thread(() -> cache.getOrEvaluate(2L, 0, "code", "java", null, listener -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            CodeExecutionResultDto result = judge(listener);
+            result.setStatus("RUNTIME_ERROR");
+            return result;
+        }));
+        leader.start();
+        while (leader.getState() != Thread.State.WAITING) {
+            Thread.onSpinWait();
+        }
+
+        List<Integer> replayed = new ArrayList<>();
+        AtomicReference<CodeExecutionResultDto> shared = new AtomicReference<>();
+        Thread waiter = new Thread(() -> shared.set(cache.getOrEvaluate(2L, 0, "code", "java",
+                (index, result) -> replayed.add(index), this::judge)));
+        waiter.start();
+        while (waiter.getState() != Thread.State.WAITING && waiter.isAlive()) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+        leader.join();
+        waiter.join();
+
+        assertEquals(1, evaluations.get());
+        assertEquals("RUNTIME_ERROR", shared.get().getStatus());
+        assertEquals(List.of(0, 1), replayed);
+        // Once done, the uncacheable verdict is evaluated afresh
+        assertEquals("WRONG_ANSWER", cache.getOrEvaluate(2L, 0, "code", "java", null, this::judge).getStatus());
+        assertEquals(2, evaluations.get());
+    }
+
+    // Two test cases, the second failing; reported as they are "judged"
+    private CodeExecutionResultDto judge(CodeExecutionService.TestCaseListener listener) {
+        evaluations.incrementAndGet();
+        List<TestCaseResultDto> results = new ArrayList<>();
+        results.add(new TestCaseResultDto("a", "1", "1", true));
+        results.add(new TestCaseResultDto("b", "3", "2", false));
+        if (listener != null) {
+            for (int i = 0; i < results.size(); i++) {
+                listener.onResult(i, results.get(i));
+            }
+        }
+        return new CodeExecutionResultDto("WRONG_ANSWER", results, null, 1, 2);
+    }
+}